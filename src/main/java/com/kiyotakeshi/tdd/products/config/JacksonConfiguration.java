@@ -0,0 +1,41 @@
+package com.kiyotakeshi.tdd.products.config;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.kiyotakeshi.tdd.products.entity.Product;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+@Configuration
+public class JacksonConfiguration {
+
+    public static final String PRODUCT_FIELDS_FILTER = "productFields";
+
+    /**
+     * Lets responses wrapped in a MappingJacksonValue write only some Product fields,
+     * Products are written in full when no filter is given
+     */
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer productFieldsFilter() {
+        return builder -> builder
+                .mixIn(Product.class, ProductFieldsMixin.class)
+                .filters(new SimpleFilterProvider().setFailOnUnknownId(false));
+    }
+
+    /**
+     * @param fields Product attribute names to write
+     * @return filters to set on a MappingJacksonValue
+     */
+    public static SimpleFilterProvider productFields(Set<String> fields) {
+        return new SimpleFilterProvider()
+                .addFilter(PRODUCT_FIELDS_FILTER, SimpleBeanPropertyFilter.filterOutAllExcept(fields));
+    }
+
+    @JsonFilter(PRODUCT_FIELDS_FILTER)
+    interface ProductFieldsMixin {
+    }
+}
@@ -0,0 +1,20 @@
+package com.kiyotakeshi.tdd.products.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PersistenceTuningProperties.class)
+public class PersistenceTuningConfiguration {
+
+    /**
+     * Nothing injects the settings, they only feed placeholders in application.yaml,
+     * so under lazy initialization (startup profile) they would never be bound and validated
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter persistenceTuningPropertiesEagerFilter() {
+        return LazyInitializationExcludeFilter.forBeanTypes(PersistenceTuningProperties.class);
+    }
+}
@@ -0,0 +1,137 @@
+package com.kiyotakeshi.tdd.products.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * Connection pool and Hibernate statement settings, bound from {@code products.persistence}.
+ * application.yaml maps these values onto the {@code spring.datasource.hikari} and
+ * {@code spring.jpa.properties} keys, so this class is the single validated place to tune them.
+ * Ready made sets live in the {@code read-heavy} and {@code write-heavy} profiles.
+ */
+@Validated
+@ConfigurationProperties("products.persistence")
+public class PersistenceTuningProperties {
+
+    /** maximum number of pooled connections */
+    @Min(1)
+    @Max(200)
+    private int poolSize = 10;
+
+    /** connections kept open when idle */
+    @Min(0)
+    private int minIdle = 10;
+
+    /** milliseconds a request waits for a pooled connection before failing */
+    @Min(250)
+    private long connectionTimeoutMs = 30_000;
+
+    /** prepared statements cached per connection by the driver */
+    @Min(0)
+    @Max(10_000)
+    private int statementCacheSize = 8;
+
+    /** parsed HQL/JPQL query plans cached by Hibernate */
+    @Min(16)
+    private int queryPlanCacheSize = 2048;
+
+    /** rows fetched per round trip when reading results, 0 keeps the driver default */
+    @Min(0)
+    @Max(10_000)
+    private int fetchSize = 0;
+
+    /**
+     * statements sent per JDBC batch, 0 disables batching.
+     * Product ids use IDENTITY generation, so Hibernate batches updates and deletes but not inserts.
+     */
+    @Min(0)
+    @Max(1_000)
+    private int batchSize = 0;
+
+    /** orders inserts and updates by entity so more of them fit into one batch */
+    private boolean orderStatements = false;
+
+    /** caches Product entities and product by id queries in the Hibernate second-level cache */
+    private boolean secondLevelCache = false;
+
+    @AssertTrue(message = "min-idle must not be greater than pool-size")
+    public boolean isMinIdleWithinPoolSize() {
+        return minIdle <= poolSize;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public long getConnectionTimeoutMs() {
+        return connectionTimeoutMs;
+    }
+
+    public void setConnectionTimeoutMs(long connectionTimeoutMs) {
+        this.connectionTimeoutMs = connectionTimeoutMs;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getQueryPlanCacheSize() {
+        return queryPlanCacheSize;
+    }
+
+    public void setQueryPlanCacheSize(int queryPlanCacheSize) {
+        this.queryPlanCacheSize = queryPlanCacheSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public boolean isOrderStatements() {
+        return orderStatements;
+    }
+
+    public void setOrderStatements(boolean orderStatements) {
+        this.orderStatements = orderStatements;
+    }
+
+    public boolean isSecondLevelCache() {
+        return secondLevelCache;
+    }
+
+    public void setSecondLevelCache(boolean secondLevelCache) {
+        this.secondLevelCache = secondLevelCache;
+    }
+}
@@ -0,0 +1,29 @@
+package com.kiyotakeshi.tdd.products.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops the application as soon as it is ready.
+ * Used by the {@code startup} Maven profile to record the classes loaded during startup
+ * into an AppCDS archive ({@code -XX:ArchiveClassesAtExit}).
+ */
+@Component
+@ConditionalOnProperty("products.startup.exit-when-ready")
+public class StartupTrainingRun implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOGGER = LogManager.getLogger(StartupTrainingRun.class);
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        LOGGER.info("Training run finished, shutting down");
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        System.exit(SpringApplication.exit(context));
+    }
+}
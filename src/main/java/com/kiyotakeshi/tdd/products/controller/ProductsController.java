@@ -1,46 +1,101 @@
 package com.kiyotakeshi.tdd.products.controller;
 
+import com.kiyotakeshi.tdd.products.config.JacksonConfiguration;
 import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.idempotency.IdempotencyStore;
+import com.kiyotakeshi.tdd.products.repository.ProductFields;
+import com.kiyotakeshi.tdd.products.repository.ProductPatch;
+import com.kiyotakeshi.tdd.products.service.ProductCatalogSnapshot;
 import com.kiyotakeshi.tdd.products.service.ProductService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 public class ProductsController {
 
     private static final Logger LOGGER = LogManager.getLogger(ProductsController.class);
 
+    private static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
     private final ProductService productService;
 
-    public ProductsController(ProductService productService) {
+    private final IdempotencyStore idempotencyStore;
+
+    public ProductsController(ProductService productService, IdempotencyStore idempotencyStore) {
         this.productService = productService;
+        this.idempotencyStore = idempotencyStore;
     }
 
     /**
      * Gets all the products in repository
      *
-     * @return Iterable list of all Products
+     * @param fields comma separated Product fields to return, all fields if missing
+     * @return ResponseEntity with the list of all Products
+     * and the catalog snapshot epoch and version as eTag
+     * or BAD_REQUEST if an unknown field is requested
      */
     @GetMapping("/products")
-    public Iterable<Product> getAllProducts() {
-        return productService.findAll();
+    public ResponseEntity<?> getAllProducts(@RequestParam(required = false) String fields) {
+        Set<String> requestedFields;
+        try {
+            requestedFields = ProductFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ProductCatalogSnapshot snapshot = productService.findAllSnapshot();
+        if (requestedFields.isEmpty()) {
+            return ResponseEntity
+                    .ok()
+                    .eTag(snapshot.getETag())
+                    .body(snapshot.getProducts());
+        }
+        // the catalog is already in memory, so the projection is applied while writing JSON
+        MappingJacksonValue body = new MappingJacksonValue(snapshot.getProducts());
+        body.setFilters(JacksonConfiguration.productFields(requestedFields));
+        return ResponseEntity
+                .ok()
+                .eTag(snapshot.getETag() + "-" + String.join(",", requestedFields))
+                .body(body);
     }
 
     /**
      * Get the Product with specified ID
      *
-     * @param id ID of the Product to get
+     * @param id     ID of the Product to get
+     * @param fields comma separated Product fields to return, all fields if missing
      * @return ResponseEntity with the found Product
      * or NOT_FOUND if no Product found
+     * or BAD_REQUEST if an unknown field is requested
      */
     @GetMapping("/products/{id}")
-    public ResponseEntity<?> getProduct(@PathVariable Integer id) {
+    public ResponseEntity<?> getProduct(@PathVariable Integer id,
+                                        @RequestParam(required = false) String fields) {
+        Set<String> requestedFields;
+        try {
+            requestedFields = ProductFields.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!requestedFields.isEmpty()) {
+            return getProductFields(id, requestedFields);
+        }
+
         Product product = productService.findById(id);
         if (product != null) {
             try {
@@ -57,14 +112,80 @@ public class ProductsController {
         }
     }
 
+    private ResponseEntity<?> getProductFields(Integer id, Set<String> fields) {
+        // only the requested columns are selected, plus the version for the eTag
+        Set<String> selected = new LinkedHashSet<>(fields);
+        selected.add("version");
+        Map<String, Object> values = productService.findFieldsById(id, selected);
+        if (values == null) {
+            return ResponseEntity.notFound().build();
+        }
+        Object version = fields.contains("version") ? values.get("version") : values.remove("version");
+        try {
+            return ResponseEntity
+                    .ok()
+                    .eTag(String.valueOf(version))
+                    .location(new URI("/products/" + id))
+                    .body(values);
+        } catch (URISyntaxException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Get the quantity history of the Product with specified ID
+     *
+     * @param id   ID of the Product
+     * @param from ISO-8601 instant the range starts at, inclusive, from the first change if missing
+     * @param to   ISO-8601 instant the range ends at, exclusive, until now if missing
+     * @param step bucket size like 1h or PT15M, the changes themselves are returned if missing
+     * @return ResponseEntity with the quantity changes, or with open/high/low/close buckets of the step
+     * or NOT_FOUND if neither the Product nor any history of it exists
+     * or BAD_REQUEST if a parameter cannot be parsed or the range has too many changes or buckets
+     */
+    @GetMapping("/products/{id}/stock-history")
+    public ResponseEntity<?> getStockHistory(@PathVariable Integer id,
+                                             @RequestParam(required = false) String from,
+                                             @RequestParam(required = false) String to,
+                                             @RequestParam(required = false) String step) {
+        List<?> history;
+        try {
+            Instant fromInstant = from == null ? null : Instant.parse(from);
+            Instant toInstant = to == null ? null : Instant.parse(to);
+            history = step == null
+                    ? productService.findStockHistory(id, fromInstant, toInstant)
+                    : productService.findStockRollups(id, fromInstant, toInstant, DurationStyle.detectAndParse(step));
+        } catch (DateTimeParseException | IllegalArgumentException | ArithmeticException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (history == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().body(history);
+    }
+
     /**
      * Saves a new Product
      *
-     * @param product Product to save
+     * @param product        Product to save
+     * @param idempotencyKey optional key, retries with the same key get the first response back
+     *                       instead of saving the Product again
      * @return ResponseEntity with the saved Product
+     * or UNPROCESSABLE_ENTITY if the key was already used for another Product
+     * or CONFLICT if the first request with the key is still running
      */
     @PostMapping("/products")
-    public ResponseEntity<?> saveProduct(@RequestBody Product product) {
+    public ResponseEntity<?> saveProduct(@RequestBody Product product,
+                                         @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return createProduct(product);
+        }
+        // fingerprint is taken before saving assigns id and version
+        String fingerprint = product.toString();
+        return idempotencyStore.execute("POST /products " + idempotencyKey, fingerprint, () -> createProduct(product));
+    }
+
+    private ResponseEntity<?> createProduct(Product product) {
         LOGGER.info("Adding new product with name:{}", product.getName());
         Product newProduct = productService.save(product);
         try {
@@ -102,10 +223,13 @@ public class ProductsController {
                 existingProduct.setName(product.getName());
                 existingProduct.setDescription(product.getDescription());
                 existingProduct.setQuantity(product.getQuantity());
-                existingProduct.setVersion(existingProduct.getVersion() + 1);
 
                 try {
-                    existingProduct = productService.update(existingProduct);
+                    existingProduct = productService.update(existingProduct, ifMatch);
+                    if (existingProduct == null) {
+                        // changed or deleted since it was read
+                        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+                    }
                     return ResponseEntity
                             .ok()
                             .eTag(Integer.toString(existingProduct.getVersion()))
@@ -118,6 +242,53 @@ public class ProductsController {
         }
     }
 
+    /**
+     * Partially update an existing Product with a JSON Merge Patch,
+     * only the fields present in the body are written
+     *
+     * @param id       id of the Product to update
+     * @param document merge patch with the changed name, description or quantity
+     * @param ifMatch  eTag version of the Product to update
+     * @return ResponseEntity with the updated Product,
+     * NOT_FOUND if no Product found, CONFLICT if eTag versions do not match
+     * or BAD_REQUEST if the patch contains unknown fields
+     */
+    @PatchMapping(value = "/products/{id}", consumes = {MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<?> patchProduct(@PathVariable Integer id,
+                                          @RequestBody Map<String, Object> document,
+                                          @RequestHeader("If-Match") Integer ifMatch) {
+        ProductPatch patch;
+        try {
+            patch = ProductPatch.fromMergePatch(document);
+        } catch (IllegalArgumentException e) {
+            LOGGER.info("Rejecting patch of product with id:{}, {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        Product patchedProduct = patch.isEmpty() ? null : productService.patch(id, ifMatch, patch);
+        if (patchedProduct == null) {
+            // nothing written, find out why
+            Product existingProduct = productService.findById(id);
+            if (existingProduct == null) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!existingProduct.getVersion().equals(ifMatch)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            patchedProduct = existingProduct;
+        }
+
+        try {
+            return ResponseEntity
+                    .ok()
+                    .eTag(Integer.toString(patchedProduct.getVersion()))
+                    .location(new URI("/products/" + patchedProduct.getId()))
+                    .body(patchedProduct);
+        } catch (URISyntaxException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     /**
      * Delete an existing Product with given id
      *
@@ -128,12 +299,49 @@ public class ProductsController {
     public ResponseEntity<?> deleteProduct(@PathVariable Integer id) {
         LOGGER.info("Deleting product with id:{}", id);
 
-        Product existingProduct = productService.findById(id);
-        if (existingProduct != null) {
-            productService.delete(id);
+        if (productService.delete(id)) {
             return ResponseEntity.ok().build();
         } else {
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * Delete several Products, either by id or by filter
+     *
+     * @param ids            ids of the Products to delete
+     * @param name           delete Products with this exact name
+     * @param maxQuantity    delete Products with at most this quantity
+     * @param idempotencyKey optional key, retries with the same key get the first response back
+     * @return ResponseEntity with the number of deleted Products
+     * or BAD_REQUEST if neither ids nor a filter is given
+     * or CONFLICT if the first request with the key is still running
+     */
+    @DeleteMapping("/products")
+    public ResponseEntity<?> deleteProducts(@RequestParam(required = false) List<Integer> ids,
+                                            @RequestParam(required = false) String name,
+                                            @RequestParam(required = false) Integer maxQuantity,
+                                            @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return bulkDelete(ids, name, maxQuantity);
+        }
+        String fingerprint = "ids=" + ids + ", name=" + name + ", maxQuantity=" + maxQuantity;
+        return idempotencyStore.execute("DELETE /products " + idempotencyKey, fingerprint,
+                () -> bulkDelete(ids, name, maxQuantity));
+    }
+
+    private ResponseEntity<?> bulkDelete(List<Integer> ids, String name, Integer maxQuantity) {
+        int deleted;
+        if (ids != null && !ids.isEmpty()) {
+            LOGGER.info("Deleting products with ids:{}", ids);
+            deleted = productService.deleteAll(ids);
+        } else if (name != null || maxQuantity != null) {
+            LOGGER.info("Deleting products with name:{} and quantity up to:{}", name, maxQuantity);
+            deleted = productService.deleteByFilter(name, maxQuantity);
+        } else {
+            // refuse to delete the whole catalog by accident
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(Map.of("deleted", deleted));
+    }
 }
@@ -0,0 +1,56 @@
+package com.kiyotakeshi.tdd.products.idempotency;
+
+import org.hibernate.validator.constraints.time.DurationMin;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.time.Duration;
+
+/**
+ * Settings of the Idempotency-Key deduplication store, bound from {@code products.idempotency}
+ */
+@Validated
+@ConfigurationProperties("products.idempotency")
+public class IdempotencyProperties {
+
+    /** how long a response is replayed for retries with the same key */
+    @NotNull
+    @DurationMin(millis = 1)
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /** maximum number of remembered keys, the oldest ones are dropped first */
+    @Min(1)
+    private int maxKeys = 10_000;
+
+    /** how long a duplicate waits for the first request with its key, it gets 409 CONFLICT after that */
+    @NotNull
+    @DurationMin(millis = 1)
+    private Duration waitTimeout = Duration.ofSeconds(10);
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public Duration getWaitTimeout() {
+        return waitTimeout;
+    }
+
+    public void setWaitTimeout(Duration waitTimeout) {
+        this.waitTimeout = waitTimeout;
+    }
+}
@@ -0,0 +1,170 @@
+package com.kiyotakeshi.tdd.products.idempotency;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL evicted store of responses to requests carrying an Idempotency-Key header.
+ * The first request with a key runs the write, retries get the stored response back without running it again,
+ * and concurrent duplicates wait for the first one instead of writing twice.
+ * Only successful (2xx) responses are kept, so a failed request can be retried with the same key.
+ * Keys whose write is still running are never evicted, and a duplicate waits at most wait-timeout for them.
+ */
+public class IdempotencyStore {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED = "Idempotent-Replayed";
+
+    private static final Logger LOGGER = LogManager.getLogger(IdempotencyStore.class);
+
+    private final long ttlNanos;
+    private final int maxKeys;
+    private final long waitTimeoutNanos;
+    private final LongSupplier nanoClock;
+
+    // all keys share one TTL, so insertion order is also expiry order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public IdempotencyStore(IdempotencyProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    IdempotencyStore(IdempotencyProperties properties, LongSupplier nanoClock) {
+        this.ttlNanos = properties.getTtl().toNanos();
+        this.maxKeys = properties.getMaxKeys();
+        this.waitTimeoutNanos = properties.getWaitTimeout().toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs a write once per key
+     *
+     * @param key         idempotency key, scoped by the caller to the endpoint
+     * @param fingerprint identifies the request payload, a key reused with another payload is rejected
+     * @param write       performs the write and builds its response
+     * @return response of the write, a replay of the stored response,
+     * UNPROCESSABLE_ENTITY if the key was used for a different payload,
+     * or CONFLICT if the first request with the key is still running after wait-timeout
+     */
+    public ResponseEntity<?> execute(String key, String fingerprint, Supplier<ResponseEntity<?>> write) {
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            long now = nanoClock.getAsLong();
+            evictExpired(now);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(fingerprint, now + ttlNanos);
+                entries.put(key, entry);
+                evictOverflow();
+                owner = true;
+            }
+        }
+
+        if (!entry.fingerprint.equals(fingerprint)) {
+            LOGGER.warn("Idempotency key {} reused with a different request", key);
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).build();
+        }
+        if (owner) {
+            return write(key, entry, write);
+        }
+
+        LOGGER.info("Replaying response for idempotency key {}", key);
+        try {
+            return replay(entry.response.get(waitTimeoutNanos, TimeUnit.NANOSECONDS));
+        } catch (TimeoutException e) {
+            LOGGER.warn("Request with idempotency key {} still in progress", key);
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private ResponseEntity<?> write(String key, Entry entry, Supplier<ResponseEntity<?>> write) {
+        ResponseEntity<?> response;
+        try {
+            response = write.get();
+        } catch (RuntimeException e) {
+            forget(key, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            forget(key, entry);
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    private void forget(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    // entries whose write is running are skipped, evicting them would let a retry write a second time
+    private void evictExpired(long now) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expiresAtNanos - now > 0) {
+                return;
+            }
+            if (entry.response.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // may stay above max-keys by the number of writes in flight
+    private void evictOverflow() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxKeys && iterator.hasNext()) {
+            if (iterator.next().response.isDone()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static ResponseEntity<?> replay(ResponseEntity<?> response) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(response.getHeaders());
+        headers.set(IDEMPOTENT_REPLAYED, "true");
+        return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final long expiresAtNanos;
+        private final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+
+        private Entry(String fingerprint, long expiresAtNanos) {
+            this.fingerprint = fingerprint;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
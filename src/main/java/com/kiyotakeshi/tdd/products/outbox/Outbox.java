@@ -0,0 +1,53 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kiyotakeshi.tdd.products.entity.OutboxEvent;
+import com.kiyotakeshi.tdd.products.repository.OutboxEventRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+
+/**
+ * Records product changes in the outbox table.
+ * Must be called inside the transaction writing the change, so the event is committed or rolled back with it.
+ */
+@Component
+public class Outbox {
+
+    public static final String PRODUCT_CREATED = "PRODUCT_CREATED";
+    public static final String PRODUCT_UPDATED = "PRODUCT_UPDATED";
+    public static final String PRODUCT_DELETED = "PRODUCT_DELETED";
+    public static final String PRODUCTS_DELETED = "PRODUCTS_DELETED";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+
+    public Outbox(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.clock = Clock.systemUTC();
+    }
+
+    /**
+     * Adds an event to the outbox
+     *
+     * @param type      event type, one of the constants of this class
+     * @param productId id of the changed Product, or null for changes of several products
+     * @param payload   object written as the JSON payload of the event
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String type, Integer productId, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Outbox payload of " + type + " cannot be written as JSON", e);
+        }
+        outboxEventRepository.save(new OutboxEvent(type, productId, json, Instant.now(clock)));
+    }
+}
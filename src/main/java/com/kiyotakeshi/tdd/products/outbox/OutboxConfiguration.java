@@ -0,0 +1,38 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kiyotakeshi.tdd.products.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
+import java.util.stream.Collectors;
+
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties(OutboxProperties.class)
+public class OutboxConfiguration {
+
+    @Bean
+    public OutboxSink outboxSink(OutboxProperties properties, ObjectMapper objectMapper) {
+        return switch (properties.getSink()) {
+            case IN_MEMORY -> new InMemoryOutboxSink(properties.getInMemoryCapacity());
+            case FILE -> new FileOutboxSink(properties.getFile(), objectMapper);
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(value = "products.outbox.dispatcher-enabled", matchIfMissing = true)
+    public OutboxDispatcher outboxDispatcher(OutboxEventRepository outboxEventRepository,
+                                             ObjectProvider<OutboxSink> sinks,
+                                             OutboxProperties properties,
+                                             MeterRegistry meterRegistry) {
+        return new OutboxDispatcher(outboxEventRepository, sinks.orderedStream().collect(Collectors.toList()),
+                properties.getBatchSize(), meterRegistry, Clock.systemUTC());
+    }
+}
@@ -0,0 +1,144 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import com.kiyotakeshi.tdd.products.entity.OutboxEvent;
+import com.kiyotakeshi.tdd.products.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the outbox table in the background and publishes the events in batches to every {@link OutboxSink}.
+ * A batch is deleted from the table only after all sinks accepted it, so delivery is at least once.
+ * <p>
+ * Metrics: {@code outbox.events.published} (counter, its rate is the throughput),
+ * {@code outbox.lag} (age in seconds of the oldest unpublished event),
+ * {@code outbox.batch.publish} (timer) and {@code outbox.publish.failures} (counter).
+ * <p>
+ * Polls only while the dispatcher is running as a {@link SmartLifecycle}. It stops, after finishing the batch
+ * in progress, at the start of context shutdown, before the database and JPA are closed.
+ */
+public class OutboxDispatcher implements SmartLifecycle {
+
+    private static final Logger LOGGER = LogManager.getLogger(OutboxDispatcher.class);
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final List<OutboxSink> sinks;
+    private final int batchSize;
+    private final Clock clock;
+
+    // drains are serialized with start and stop, so stop returns once no batch is in progress
+    private final Object drainLock = new Object();
+    private volatile boolean running;
+
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter published;
+    private final Counter failures;
+    private final Timer batchTimer;
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository, List<OutboxSink> sinks, int batchSize,
+                            MeterRegistry meterRegistry, Clock clock) {
+        if (sinks.isEmpty()) {
+            // published batches are deleted, without a sink they would be lost
+            throw new IllegalArgumentException("no outbox sink to publish to");
+        }
+        this.outboxEventRepository = outboxEventRepository;
+        this.sinks = sinks;
+        this.batchSize = batchSize;
+        this.clock = clock;
+        this.published = meterRegistry.counter("outbox.events.published");
+        this.failures = meterRegistry.counter("outbox.publish.failures");
+        this.batchTimer = meterRegistry.timer("outbox.batch.publish");
+        Gauge.builder("outbox.lag", lagMillis, lag -> lag.get() / 1000d)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${products.outbox.poll-interval-ms:500}")
+    public void poll() {
+        drain();
+    }
+
+    @Override
+    public void start() {
+        synchronized (drainLock) {
+            running = true;
+        }
+    }
+
+    @Override
+    public void stop() {
+        // a drain in progress sees the flag after its current batch, then the lock waits for it to finish
+        running = false;
+        synchronized (drainLock) {
+            LOGGER.info("Outbox dispatcher stopped");
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Publishes all pending events, stops at the first batch a sink rejects or when the dispatcher is stopped
+     *
+     * @return number of published events
+     */
+    public int drain() {
+        synchronized (drainLock) {
+            return drainWhileRunning();
+        }
+    }
+
+    private int drainWhileRunning() {
+        int count = 0;
+        while (running) {
+            List<OutboxEvent> batch = outboxEventRepository.findByOrderByIdAsc(PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                lagMillis.set(0);
+                return count;
+            }
+            lagMillis.set(Math.max(0, Duration.between(batch.get(0).getCreatedAt(), clock.instant()).toMillis()));
+
+            long start = System.nanoTime();
+            try {
+                for (OutboxSink sink : sinks) {
+                    sink.publish(batch);
+                }
+            } catch (Exception e) {
+                failures.increment();
+                LOGGER.error("Publishing {} outbox events failed, retrying on next poll", batch.size(), e);
+                return count;
+            }
+            batchTimer.record(Duration.ofNanos(System.nanoTime() - start));
+
+            outboxEventRepository.deleteEventsByIdIn(batch.stream().map(OutboxEvent::getId).collect(Collectors.toList()));
+            published.increment(batch.size());
+            count += batch.size();
+            if (batch.size() < batchSize) {
+                lagMillis.set(0);
+                return count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return age in milliseconds of the oldest unpublished event at the last poll
+     */
+    public long getLagMillis() {
+        return lagMillis.get();
+    }
+}
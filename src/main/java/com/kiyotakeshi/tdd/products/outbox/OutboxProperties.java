@@ -0,0 +1,91 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Settings of the outbox dispatcher, bound from {@code products.outbox}
+ */
+@Validated
+@ConfigurationProperties("products.outbox")
+public class OutboxProperties {
+
+    /** runs the background dispatcher, turn off when another instance drains the same database */
+    private boolean dispatcherEnabled = true;
+
+    /** milliseconds between two drains of the outbox table */
+    @Min(1)
+    private long pollIntervalMs = 500;
+
+    /** events read and published together */
+    @Min(1)
+    private int batchSize = 100;
+
+    /** built-in sink, "in-memory" or "file" */
+    @NotNull
+    private Sink sink = Sink.IN_MEMORY;
+
+    /** events kept by the in-memory sink */
+    private int inMemoryCapacity = 10_000;
+
+    /** JSON lines file written by the file sink */
+    private Path file = Paths.get("target", "outbox-events.jsonl");
+
+    public boolean isDispatcherEnabled() {
+        return dispatcherEnabled;
+    }
+
+    public void setDispatcherEnabled(boolean dispatcherEnabled) {
+        this.dispatcherEnabled = dispatcherEnabled;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Sink getSink() {
+        return sink;
+    }
+
+    public void setSink(Sink sink) {
+        this.sink = sink;
+    }
+
+    public int getInMemoryCapacity() {
+        return inMemoryCapacity;
+    }
+
+    public void setInMemoryCapacity(int inMemoryCapacity) {
+        this.inMemoryCapacity = inMemoryCapacity;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public void setFile(Path file) {
+        this.file = file;
+    }
+
+    public enum Sink {
+        IN_MEMORY, FILE
+    }
+}
@@ -0,0 +1,14 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import com.kiyotakeshi.tdd.products.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of outbox events, e.g. an audit log, a search indexer or a message broker.
+ * Events are delivered at least once and in outbox order, a batch that throws is delivered again.
+ */
+public interface OutboxSink {
+
+    void publish(List<OutboxEvent> events) throws Exception;
+}
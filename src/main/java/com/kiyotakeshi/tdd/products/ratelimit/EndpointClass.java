@@ -0,0 +1,20 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+/**
+ * Groups /products endpoints by cost, each group has its own rate limit
+ */
+public enum EndpointClass {
+    /** GET /products, returns the whole catalog */
+    LIST,
+    /** GET /products/{id} */
+    READ,
+    /** POST, PUT, PATCH and DELETE */
+    WRITE;
+
+    static EndpointClass of(String method, String path) {
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return WRITE;
+        }
+        return path.endsWith("/products") || path.endsWith("/products/") ? LIST : READ;
+    }
+}
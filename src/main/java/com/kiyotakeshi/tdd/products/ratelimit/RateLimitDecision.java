@@ -0,0 +1,55 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+/**
+ * Outcome of {@link RateLimiter#acquire(String, EndpointClass)}
+ */
+public final class RateLimitDecision {
+
+    public enum Outcome {
+        ALLOWED,
+        /** the client used up its tokens for the endpoint class, answered with 429 */
+        RATE_LIMITED,
+        /** too many expensive requests are in flight, answered with 503 */
+        OVERLOADED
+    }
+
+    static final RateLimitDecision ALLOWED = new RateLimitDecision(Outcome.ALLOWED, 0, false);
+    static final RateLimitDecision ALLOWED_WITH_PERMIT = new RateLimitDecision(Outcome.ALLOWED, 0, true);
+
+    private final Outcome outcome;
+    private final long retryAfterSeconds;
+    private final boolean holdsPermit;
+
+    private RateLimitDecision(Outcome outcome, long retryAfterSeconds, boolean holdsPermit) {
+        this.outcome = outcome;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.holdsPermit = holdsPermit;
+    }
+
+    static RateLimitDecision rateLimited(long retryAfterSeconds) {
+        return new RateLimitDecision(Outcome.RATE_LIMITED, retryAfterSeconds, false);
+    }
+
+    static RateLimitDecision overloaded(long retryAfterSeconds) {
+        return new RateLimitDecision(Outcome.OVERLOADED, retryAfterSeconds, false);
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public boolean isAllowed() {
+        return outcome == Outcome.ALLOWED;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * @return true if a concurrency permit was taken and must be given back with {@link RateLimiter#release(RateLimitDecision)}
+     */
+    public boolean holdsPermit() {
+        return holdsPermit;
+    }
+}
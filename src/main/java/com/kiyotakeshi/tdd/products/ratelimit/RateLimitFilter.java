@@ -0,0 +1,63 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Admission control in front of ProductsController.
+ * Rejected requests get 429 TOO_MANY_REQUESTS or 503 SERVICE_UNAVAILABLE with a Retry-After header.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger LOGGER = LogManager.getLogger(RateLimitFilter.class);
+
+    private final RateLimiter rateLimiter;
+    private final String clientHeader;
+
+    /**
+     * @param clientHeader trusted request header identifying the client, or null to key clients by remote address
+     */
+    public RateLimitFilter(RateLimiter rateLimiter, String clientHeader) {
+        this.rateLimiter = rateLimiter;
+        this.clientHeader = clientHeader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String client = clientOf(request);
+        EndpointClass endpointClass = EndpointClass.of(request.getMethod(), request.getRequestURI());
+        RateLimitDecision decision = rateLimiter.acquire(client, endpointClass);
+        if (!decision.isAllowed()) {
+            HttpStatus status = decision.getOutcome() == RateLimitDecision.Outcome.RATE_LIMITED
+                    ? HttpStatus.TOO_MANY_REQUESTS
+                    : HttpStatus.SERVICE_UNAVAILABLE;
+            LOGGER.warn("Rejecting {} request from client:{} with {}", endpointClass, client, status.value());
+            response.setStatus(status.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(decision.getRetryAfterSeconds()));
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            rateLimiter.release(decision);
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        if (clientHeader == null || clientHeader.isEmpty()) {
+            return request.getRemoteAddr();
+        }
+        String client = request.getHeader(clientHeader);
+        return client != null && !client.isEmpty() ? client : request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,152 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+/**
+ * Settings of the /products admission control, bound from {@code products.rate-limit}
+ */
+@Validated
+@ConfigurationProperties("products.rate-limit")
+public class RateLimitProperties {
+
+    /** turns rate limiting and concurrency limiting on or off */
+    private boolean enabled = true;
+
+    /**
+     * request header identifying the client, clients are keyed by remote address if not set.
+     * Clients can put anything in a header, so only set this behind a trusted proxy or auth layer
+     * that sets or overwrites it.
+     */
+    private String clientHeader;
+
+    /** number of client buckets kept, the least recently used one is dropped to make room for a new client */
+    @Min(1)
+    private int maxClients = 10_000;
+
+    /** maximum number of GET /products requests processed at the same time */
+    @Min(1)
+    private int listMaxConcurrent = 8;
+
+    @Valid
+    @NotNull
+    private Limit list = new Limit(20, 10);
+
+    @Valid
+    @NotNull
+    private Limit read = new Limit(100, 50);
+
+    @Valid
+    @NotNull
+    private Limit write = new Limit(20, 10);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public int getMaxClients() {
+        return maxClients;
+    }
+
+    public void setMaxClients(int maxClients) {
+        this.maxClients = maxClients;
+    }
+
+    public int getListMaxConcurrent() {
+        return listMaxConcurrent;
+    }
+
+    public void setListMaxConcurrent(int listMaxConcurrent) {
+        this.listMaxConcurrent = listMaxConcurrent;
+    }
+
+    public Limit getList() {
+        return list;
+    }
+
+    public void setList(Limit list) {
+        this.list = list;
+    }
+
+    public Limit getRead() {
+        return read;
+    }
+
+    public void setRead(Limit read) {
+        this.read = read;
+    }
+
+    public Limit getWrite() {
+        return write;
+    }
+
+    public void setWrite(Limit write) {
+        this.write = write;
+    }
+
+    public Limit limitFor(EndpointClass endpointClass) {
+        switch (endpointClass) {
+            case LIST:
+                return list;
+            case READ:
+                return read;
+            default:
+                return write;
+        }
+    }
+
+    /**
+     * Token bucket settings of one endpoint class
+     */
+    public static class Limit {
+
+        /** burst size, tokens available to a new client */
+        @Min(1)
+        private int capacity;
+
+        /** tokens added per second */
+        @Positive
+        private double refillPerSecond;
+
+        public Limit() {
+        }
+
+        public Limit(int capacity, double refillPerSecond) {
+            this.capacity = capacity;
+            this.refillPerSecond = refillPerSecond;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+}
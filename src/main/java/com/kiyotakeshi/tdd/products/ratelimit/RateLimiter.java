@@ -0,0 +1,100 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Per client and per endpoint class token bucket rate limiter,
+ * with a bounded number of concurrent requests for the expensive {@link EndpointClass#LIST} endpoint.
+ * At most {@code max-clients} buckets are kept, the least recently used one is dropped to make room,
+ * so a flood of new clients costs constant time per request and only resets the limits of idle clients.
+ */
+public class RateLimiter {
+
+    private final RateLimitProperties properties;
+    private final LongSupplier nanoClock;
+    // access ordered, guarded by itself
+    private final LinkedHashMap<BucketKey, TokenBucket> buckets;
+    private final Semaphore listPermits;
+
+    public RateLimiter(RateLimitProperties properties) {
+        this(properties, System::nanoTime);
+    }
+
+    RateLimiter(RateLimitProperties properties, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.listPermits = new Semaphore(properties.getListMaxConcurrent());
+        int maxClients = properties.getMaxClients();
+        this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BucketKey, TokenBucket> eldest) {
+                return size() > maxClients;
+            }
+        };
+    }
+
+    /**
+     * Decides whether a request may proceed.
+     * An allowed decision that {@link RateLimitDecision#holdsPermit() holds a permit}
+     * must be given back with {@link #release(RateLimitDecision)} when the request completes.
+     *
+     * @param client        client identifier
+     * @param endpointClass class of the requested endpoint
+     * @return decision for the request
+     */
+    public RateLimitDecision acquire(String client, EndpointClass endpointClass) {
+        long now = nanoClock.getAsLong();
+        long waitNanos = bucket(client, endpointClass, now).tryAcquire(now);
+        if (waitNanos > 0) {
+            return RateLimitDecision.rateLimited(toRetryAfterSeconds(waitNanos));
+        }
+        if (endpointClass != EndpointClass.LIST) {
+            return RateLimitDecision.ALLOWED;
+        }
+        if (!listPermits.tryAcquire()) {
+            return RateLimitDecision.overloaded(1);
+        }
+        return RateLimitDecision.ALLOWED_WITH_PERMIT;
+    }
+
+    /**
+     * Gives back the concurrency permit of a decision, if it holds one
+     *
+     * @param decision decision returned by {@link #acquire(String, EndpointClass)}
+     */
+    public void release(RateLimitDecision decision) {
+        if (decision.holdsPermit()) {
+            listPermits.release();
+        }
+    }
+
+    int trackedBuckets() {
+        synchronized (buckets) {
+            return buckets.size();
+        }
+    }
+
+    private TokenBucket bucket(String client, EndpointClass endpointClass, long now) {
+        BucketKey key = new BucketKey(client, endpointClass);
+        synchronized (buckets) {
+            TokenBucket bucket = buckets.get(key);
+            if (bucket == null) {
+                RateLimitProperties.Limit limit = properties.limitFor(endpointClass);
+                bucket = new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond(), now);
+                buckets.put(key, bucket);
+            }
+            return bucket;
+        }
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private record BucketKey(String client, EndpointClass endpointClass) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+/**
+ * Token bucket refilled continuously at a fixed rate.
+ * Time is passed in by the caller so one clock read can serve several buckets.
+ */
+class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final double capacity;
+    private final double tokensPerNano;
+
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(int capacity, double refillPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / NANOS_PER_SECOND;
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Takes one token if available
+     *
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return 0 if a token was taken, otherwise nanoseconds until the next token is available
+     */
+    synchronized long tryAcquire(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1d) {
+            tokens -= 1d;
+            return 0;
+        }
+        return (long) Math.ceil((1d - tokens) / tokensPerNano);
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.kiyotakeshi.tdd.products.repository;
+
+import com.kiyotakeshi.tdd.products.entity.OutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends CrudRepository<OutboxEvent, Long> {
+    List<OutboxEvent> findByOrderByIdAsc(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id in :ids")
+    int deleteEventsByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,45 @@
+package com.kiyotakeshi.tdd.products.repository;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Sparse fieldset of a Product read, parsed from the {@code fields} request parameter
+ */
+public final class ProductFields {
+
+    private static final List<String> ALL = List.of("id", "name", "description", "quantity", "version");
+
+    private ProductFields() {
+    }
+
+    /**
+     * Parses a comma separated list of Product attribute names
+     *
+     * @param fields e.g. {@code id,name,quantity}
+     * @return the requested attributes in Product declaration order, empty if none are requested
+     * @throws IllegalArgumentException if an attribute does not exist
+     */
+    public static Set<String> parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return Collections.emptySet();
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!ALL.contains(name)) {
+                throw new IllegalArgumentException("Unknown field " + name);
+            }
+            requested.add(name);
+        }
+        Set<String> ordered = new LinkedHashSet<>();
+        for (String name : ALL) {
+            if (requested.contains(name)) {
+                ordered.add(name);
+            }
+        }
+        return Collections.unmodifiableSet(ordered);
+    }
+}
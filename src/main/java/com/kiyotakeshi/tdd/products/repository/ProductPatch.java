@@ -0,0 +1,56 @@
+package com.kiyotakeshi.tdd.products.repository;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Changed Product columns taken from a JSON Merge Patch (RFC 7386) document.
+ * Only name, description and quantity can be patched, a null value clears the column.
+ */
+public final class ProductPatch {
+
+    private static final Set<String> PATCHABLE = Set.of("name", "description", "quantity");
+
+    private final Map<String, Object> changes;
+
+    private ProductPatch(Map<String, Object> changes) {
+        this.changes = Collections.unmodifiableMap(changes);
+    }
+
+    /**
+     * Reads a merge patch document
+     *
+     * @param document parsed JSON object of the request body
+     * @return patch with the changed columns
+     * @throws IllegalArgumentException if the document contains an unknown field or a value of the wrong type
+     */
+    public static ProductPatch fromMergePatch(Map<String, ?> document) {
+        Map<String, Object> changes = new LinkedHashMap<>();
+        document.forEach((field, value) -> {
+            if (!PATCHABLE.contains(field)) {
+                throw new IllegalArgumentException("Field " + field + " cannot be patched");
+            }
+            if (value != null) {
+                Class<?> expected = "quantity".equals(field) ? Integer.class : String.class;
+                if (!expected.isInstance(value)) {
+                    throw new IllegalArgumentException("Field " + field + " must be a " + expected.getSimpleName());
+                }
+            }
+            changes.put(field, value);
+        });
+        return new ProductPatch(changes);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return changed Product attribute names mapped to their new values, in document order
+     */
+    public Map<String, Object> getChanges() {
+        return changes;
+    }
+}
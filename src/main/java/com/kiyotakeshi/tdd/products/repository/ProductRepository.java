@@ -1,9 +1,41 @@
 package com.kiyotakeshi.tdd.products.repository;
 
 import com.kiyotakeshi.tdd.products.entity.Product;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ProductRepository extends CrudRepository<Product, Integer> {
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductRepository extends CrudRepository<Product, Integer>, ProductRepositoryCustom {
+    // served from the second-level cache when products.persistence.second-level-cache is on
+    @QueryHints(@QueryHint(name = "org.hibernate.cacheable", value = "true"))
     Product findProductById(Integer id);
     Product findProductByIdAndName(Integer id, String name);
+
+    // bulk deletes run as a single DELETE statement without loading the entities first
+
+    @Transactional
+    @Modifying
+    @Query("delete from Product p where p.id = :id")
+    int deleteProductById(@Param("id") Integer id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Product p where p.id in :ids")
+    int deleteProductsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    // ids of the products a bulk delete is about to remove, for the outbox event and the catalog
+
+    @Query("select p.id from Product p where p.id in :ids")
+    List<Integer> findProductIdsByIdIn(@Param("ids") Collection<Integer> ids);
+
+    @Query("select p.id from Product p where (:name is null or p.name = :name)"
+            + " and (:maxQuantity is null or p.quantity <= :maxQuantity)")
+    List<Integer> findProductIdsByFilter(@Param("name") String name, @Param("maxQuantity") Integer maxQuantity);
 }
@@ -0,0 +1,28 @@
+package com.kiyotakeshi.tdd.products.repository;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public interface ProductRepositoryCustom {
+
+    /**
+     * Writes only the patched columns and increments the version, in one statement
+     * that only matches the expected version
+     *
+     * @param id      id of the Product to patch
+     * @param version version the Product is expected to have
+     * @param patch   changed columns
+     * @return number of updated rows, 0 if the Product does not exist or has another version
+     */
+    int patch(Integer id, Integer version, ProductPatch patch);
+
+    /**
+     * Reads only the requested columns of a Product
+     *
+     * @param id     id of the Product to read
+     * @param fields Product attribute names, see {@link ProductFields}
+     * @return attribute names mapped to their values in the order of {@code fields}, empty if no Product found
+     */
+    Optional<Map<String, Object>> findFieldsById(Integer id, Set<String> fields);
+}
@@ -0,0 +1,63 @@
+package com.kiyotakeshi.tdd.products.repository;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.Tuple;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int patch(Integer id, Integer version, ProductPatch patch) {
+        // attribute names are limited to the patchable ones by ProductPatch, so they are safe to concatenate
+        StringBuilder jpql = new StringBuilder("update Product p set ");
+        for (String attribute : patch.getChanges().keySet()) {
+            jpql.append("p.").append(attribute).append(" = :").append(attribute).append(", ");
+        }
+        jpql.append("p.version = p.version + 1 where p.id = :id and p.version = :version");
+
+        Query query = entityManager.createQuery(jpql.toString());
+        for (Map.Entry<String, Object> change : patch.getChanges().entrySet()) {
+            query.setParameter(change.getKey(), change.getValue());
+        }
+        return query
+                .setParameter("id", id)
+                .setParameter("version", version)
+                .executeUpdate();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> findFieldsById(Integer id, Set<String> fields) {
+        // attribute names are limited to existing ones by ProductFields, so they are safe to concatenate
+        String jpql = fields.stream()
+                .map(field -> "p." + field)
+                .collect(Collectors.joining(", ", "select ", " from Product p where p.id = :id"));
+
+        List<Tuple> rows = entityManager.createQuery(jpql, Tuple.class)
+                .setParameter("id", id)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Tuple row = rows.get(0);
+        Map<String, Object> values = new LinkedHashMap<>();
+        int index = 0;
+        for (String field : fields) {
+            values.put(field, row.get(index++));
+        }
+        return Optional.of(values);
+    }
+}
@@ -0,0 +1,172 @@
+package com.kiyotakeshi.tdd.products.service;
+
+import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.repository.ProductRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+
+/**
+ * In-memory copy-on-write catalog of all products.
+ * Reads return the current {@link ProductCatalogSnapshot} without locking,
+ * writes build a new snapshot and publish it with an atomic reference swap.
+ * The catalog is loaded from the repository on first read and then kept up to date
+ * by {@link ProductService} after each successful write.
+ * Changes made inside a transaction are applied once it commits.
+ * Writes made by other instances sharing the database are only seen by the periodic {@link #refresh()},
+ * so reads can be up to {@code products.catalog.refresh-interval-ms} behind them.
+ */
+@Component
+public class ProductCatalog {
+
+    private static final Logger LOGGER = LogManager.getLogger(ProductCatalog.class);
+
+    private final ProductRepository productRepository;
+
+    private final AtomicReference<ProductCatalogSnapshot> current = new AtomicReference<>();
+
+    // serializes writers so that loading and incremental changes are applied in order
+    private final Object writeLock = new Object();
+
+    // versions restart with every instance, the epoch keeps their ETags from colliding
+    private final String epoch = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+
+    private long lastVersion;
+
+    public ProductCatalog(ProductRepository productRepository) {
+        this.productRepository = productRepository;
+    }
+
+    /**
+     * Gets the current snapshot, loading it from the repository if needed
+     *
+     * @return current catalog snapshot
+     */
+    public ProductCatalogSnapshot snapshot() {
+        ProductCatalogSnapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        synchronized (writeLock) {
+            snapshot = current.get();
+            if (snapshot == null) {
+                snapshot = load();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Discards the current snapshot and loads a new one from the repository.
+     * Needed only when products were written without going through {@link ProductService}.
+     *
+     * @return reloaded catalog snapshot
+     */
+    public ProductCatalogSnapshot reload() {
+        synchronized (writeLock) {
+            return load();
+        }
+    }
+
+    /**
+     * Reloads a loaded catalog to pick up writes made by other instances or directly to the repository.
+     * A new snapshot, and so a new ETag, is only published if the products changed.
+     */
+    @Scheduled(fixedDelayString = "${products.catalog.refresh-interval-ms:30000}",
+            initialDelayString = "${products.catalog.refresh-interval-ms:30000}")
+    public void refresh() {
+        synchronized (writeLock) {
+            ProductCatalogSnapshot snapshot = current.get();
+            // not loaded yet, the first read loads the current products
+            if (snapshot == null) {
+                return;
+            }
+            ProductCatalogSnapshot loaded = ProductCatalogSnapshot.of(epoch, lastVersion + 1, productRepository.findAll());
+            if (!loaded.hasSameProducts(snapshot)) {
+                LOGGER.info("Refreshed product catalog version:{} with {} products", loaded.getVersion(), loaded.size());
+                publish(loaded);
+            }
+        }
+    }
+
+    /**
+     * Inserts or replaces a product in the catalog
+     *
+     * @param product saved or updated Product
+     */
+    void put(Product product) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                ProductCatalogSnapshot snapshot = current.get();
+                // not loaded yet, the first read will pick the change up from the repository
+                if (snapshot != null) {
+                    publish(snapshot.withProduct(product));
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes a product from the catalog
+     *
+     * @param id id of the deleted Product
+     */
+    void remove(Integer id) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                ProductCatalogSnapshot snapshot = current.get();
+                if (snapshot != null) {
+                    publish(snapshot.withoutProduct(id));
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes all products matching a predicate from the catalog
+     *
+     * @param filter predicate matching the deleted Products
+     */
+    void removeIf(Predicate<Product> filter) {
+        afterCommit(() -> {
+            synchronized (writeLock) {
+                ProductCatalogSnapshot snapshot = current.get();
+                if (snapshot != null) {
+                    publish(snapshot.withoutProducts(filter));
+                }
+            }
+        });
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    private ProductCatalogSnapshot load() {
+        ProductCatalogSnapshot snapshot = ProductCatalogSnapshot.of(epoch, lastVersion + 1, productRepository.findAll());
+        LOGGER.info("Loaded product catalog version:{} with {} products", snapshot.getVersion(), snapshot.size());
+        publish(snapshot);
+        return snapshot;
+    }
+
+    private void publish(ProductCatalogSnapshot snapshot) {
+        lastVersion = snapshot.getVersion();
+        current.set(snapshot);
+    }
+}
@@ -0,0 +1,182 @@
+package com.kiyotakeshi.tdd.products.service;
+
+import com.kiyotakeshi.tdd.products.entity.Product;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+/**
+ * Immutable, versioned view of the whole product catalog.
+ * Products are kept sorted by id so single-product changes can be located with a binary search.
+ * Instances are never modified, every change produces a new snapshot with a higher version.
+ * The version counts from the start of the process, so it is paired with an epoch
+ * that is different for every catalog instance to identify the content across restarts and instances.
+ */
+public final class ProductCatalogSnapshot {
+
+    private final String epoch;
+    private final long version;
+    private final Product[] products;
+    private final List<Product> view;
+
+    private ProductCatalogSnapshot(String epoch, long version, Product[] products) {
+        this.epoch = epoch;
+        this.version = version;
+        this.products = products;
+        this.view = Collections.unmodifiableList(Arrays.asList(products));
+    }
+
+    /**
+     * Builds a snapshot from the given products
+     *
+     * @param epoch   identifies the catalog instance the versions count in
+     * @param version version of the new snapshot
+     * @param source  products to copy into the snapshot
+     * @return snapshot holding copies of the products sorted by id
+     */
+    public static ProductCatalogSnapshot of(String epoch, long version, Iterable<Product> source) {
+        Product[] products = new Product[16];
+        int size = 0;
+        for (Product product : source) {
+            if (size == products.length) {
+                products = Arrays.copyOf(products, size * 2);
+            }
+            products[size++] = copyOf(product);
+        }
+        products = Arrays.copyOf(products, size);
+        Arrays.sort(products, (a, b) -> Integer.compare(a.getId(), b.getId()));
+        return new ProductCatalogSnapshot(epoch, version, products);
+    }
+
+    /**
+     * Returns a new snapshot with the given product inserted or replaced.
+     * A product older than the one already held (lower version) is ignored.
+     *
+     * @param product product to insert or replace
+     * @return new snapshot, or this snapshot if nothing changed
+     */
+    ProductCatalogSnapshot withProduct(Product product) {
+        int index = indexOf(product.getId());
+        if (index >= 0) {
+            Integer current = products[index].getVersion();
+            if (current != null && product.getVersion() != null && product.getVersion() < current) {
+                return this;
+            }
+            Product[] updated = products.clone();
+            updated[index] = copyOf(product);
+            return new ProductCatalogSnapshot(epoch, version + 1, updated);
+        }
+        int insertAt = -index - 1;
+        Product[] updated = new Product[products.length + 1];
+        System.arraycopy(products, 0, updated, 0, insertAt);
+        updated[insertAt] = copyOf(product);
+        System.arraycopy(products, insertAt, updated, insertAt + 1, products.length - insertAt);
+        return new ProductCatalogSnapshot(epoch, version + 1, updated);
+    }
+
+    /**
+     * Returns a new snapshot without the product with the given id
+     *
+     * @param id id of the product to remove
+     * @return new snapshot, or this snapshot if the product is not present
+     */
+    ProductCatalogSnapshot withoutProduct(Integer id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return this;
+        }
+        Product[] updated = new Product[products.length - 1];
+        System.arraycopy(products, 0, updated, 0, index);
+        System.arraycopy(products, index + 1, updated, index, products.length - index - 1);
+        return new ProductCatalogSnapshot(epoch, version + 1, updated);
+    }
+
+    /**
+     * Returns a new snapshot without the products matching the filter
+     *
+     * @param filter predicate matching the products to remove
+     * @return new snapshot, or this snapshot if no product matches
+     */
+    ProductCatalogSnapshot withoutProducts(Predicate<Product> filter) {
+        Product[] remaining = Arrays.stream(products).filter(filter.negate()).toArray(Product[]::new);
+        if (remaining.length == products.length) {
+            return this;
+        }
+        return new ProductCatalogSnapshot(epoch, version + 1, remaining);
+    }
+
+    /**
+     * Tells whether another snapshot holds the same products with the same values, whatever its version
+     *
+     * @param other snapshot to compare with
+     * @return true if both snapshots have equal content
+     */
+    boolean hasSameProducts(ProductCatalogSnapshot other) {
+        if (products.length != other.products.length) {
+            return false;
+        }
+        for (int i = 0; i < products.length; i++) {
+            Product product = products[i];
+            Product otherProduct = other.products[i];
+            if (!Objects.equals(product.getId(), otherProduct.getId())
+                    || !Objects.equals(product.getVersion(), otherProduct.getVersion())
+                    || !Objects.equals(product.getName(), otherProduct.getName())
+                    || !Objects.equals(product.getDescription(), otherProduct.getDescription())
+                    || !Objects.equals(product.getQuantity(), otherProduct.getQuantity())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Entity tag of the snapshot content, unique across restarts and instances
+     *
+     * @return epoch and version, like {@code 3f9kq2x81mz-12}
+     */
+    public String getETag() {
+        return epoch + "-" + version;
+    }
+
+    /**
+     * Products of this snapshot sorted by id. The returned list and its elements must not be modified.
+     *
+     * @return unmodifiable list of products
+     */
+    public List<Product> getProducts() {
+        return view;
+    }
+
+    public int size() {
+        return products.length;
+    }
+
+    private int indexOf(Integer id) {
+        int low = 0;
+        int high = products.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Integer.compare(products[mid].getId(), id);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static Product copyOf(Product product) {
+        return new Product(product.getId(), product.getName(), product.getDescription(),
+                product.getQuantity(), product.getVersion());
+    }
+}
@@ -1,11 +1,26 @@
 package com.kiyotakeshi.tdd.products.service;
 
 import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.outbox.Outbox;
+import com.kiyotakeshi.tdd.products.repository.ProductPatch;
 import com.kiyotakeshi.tdd.products.repository.ProductRepository;
+import com.kiyotakeshi.tdd.products.stockhistory.StockHistory;
+import com.kiyotakeshi.tdd.products.stockhistory.StockPoint;
+import com.kiyotakeshi.tdd.products.stockhistory.StockRollup;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ProductService {
@@ -14,46 +29,232 @@ public class ProductService {
 
     private final ProductRepository productRepository;
 
-    public ProductService(ProductRepository productRepository) {
+    private final ProductCatalog productCatalog;
+
+    private final Outbox outbox;
+
+    private final StockHistory stockHistory;
+
+    public ProductService(ProductRepository productRepository, ProductCatalog productCatalog, Outbox outbox,
+                          StockHistory stockHistory) {
         this.productRepository = productRepository;
+        this.productCatalog = productCatalog;
+        this.outbox = outbox;
+        this.stockHistory = stockHistory;
     }
 
+    @Transactional
     public Product save(Product product) {
         LOGGER.info("Saving new product with name:{}", product.getName());
         product.setVersion(1);
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        if (savedProduct != null) {
+            outbox.record(Outbox.PRODUCT_CREATED, savedProduct.getId(), savedProduct);
+            productCatalog.put(savedProduct);
+            stockHistory.record(savedProduct.getId(), savedProduct.getVersion(), savedProduct.getQuantity());
+        }
+        return savedProduct;
     }
 
-    public Product update(Product product) {
+    /**
+     * Replaces the name, description and quantity of a product, checking and bumping its version
+     * in the same transaction so the check does not depend on an open session in the caller
+     *
+     * @param product product with the new values
+     * @param version version the Product is expected to have
+     * @return the updated Product, or null if no Product with this id and version exists
+     */
+    @Transactional
+    public Product update(Product product, Integer version) {
         LOGGER.info("Updating product with id:{}", product.getId());
         Product existingProduct = productRepository.findProductById(product.getId());
+        if (existingProduct != null && !existingProduct.getVersion().equals(version)) {
+            LOGGER.error("Product with id {} and version {} could not be updated!", product.getId(), version);
+            return null;
+        }
         if (existingProduct != null) {
             existingProduct.setName(product.getName());
             existingProduct.setDescription(product.getDescription());
             existingProduct.setQuantity(product.getQuantity());
+            existingProduct.setVersion(version + 1);
             existingProduct = productRepository.save(existingProduct);
+            if (existingProduct != null) {
+                outbox.record(Outbox.PRODUCT_UPDATED, existingProduct.getId(), existingProduct);
+                productCatalog.put(existingProduct);
+                stockHistory.record(existingProduct.getId(), existingProduct.getVersion(),
+                        existingProduct.getQuantity());
+            }
         } else {
             LOGGER.error("Product with id {} could not be updated!", product.getId());
         }
         return existingProduct;
     }
 
+    /**
+     * Applies a merge patch, writing only the changed columns in one version checked statement
+     *
+     * @param id      id of the Product to patch
+     * @param version version the Product is expected to have
+     * @param patch   changed columns
+     * @return the patched Product, or null if no Product with this id and version exists
+     */
+    @Transactional
+    public Product patch(Integer id, Integer version, ProductPatch patch) {
+        LOGGER.info("Patching product with id:{} fields:{}", id, patch.getChanges().keySet());
+        if (productRepository.patch(id, version, patch) == 0) {
+            LOGGER.error("Product with id {} and version {} could not be patched!", id, version);
+            return null;
+        }
+        Product patchedProduct = productRepository.findProductById(id);
+        if (patchedProduct != null) {
+            outbox.record(Outbox.PRODUCT_UPDATED, id, patchedProduct);
+            productCatalog.put(patchedProduct);
+            stockHistory.record(id, patchedProduct.getVersion(), patchedProduct.getQuantity());
+        }
+        return patchedProduct;
+    }
+
     public Product findById(Integer id) {
         LOGGER.info("Finding product by id:{}", id);
         return productRepository.findProductById(id);
     }
 
-    public void delete(Integer id) {
+    /**
+     * Deletes a product with a single statement, without loading it first
+     *
+     * @param id id of the Product to delete
+     * @return true if the product existed and was deleted
+     */
+    @Transactional
+    public boolean delete(Integer id) {
         LOGGER.info("Deleting product with id:{}", id);
-        Product existingProduct = productRepository.findProductById(id);
-        if (existingProduct != null) {
-            productRepository.delete(existingProduct);
-        } else {
-            LOGGER.error("Product with id {} could not be found!", id);
+        if (productRepository.deleteProductById(id) > 0) {
+            outbox.record(Outbox.PRODUCT_DELETED, id, Map.of("id", id));
+            productCatalog.remove(id);
+            return true;
         }
+        LOGGER.error("Product with id {} could not be found!", id);
+        return false;
+    }
+
+    /**
+     * Deletes all products with the given ids in one statement
+     *
+     * @param ids ids of the Products to delete
+     * @return number of deleted products
+     */
+    @Transactional
+    public int deleteAll(Collection<Integer> ids) {
+        LOGGER.info("Deleting products with ids:{}", ids);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Integer> existingIds = productRepository.findProductIdsByIdIn(ids);
+        int deleted = deleteExisting(existingIds);
+        if (deleted > 0) {
+            outbox.record(Outbox.PRODUCTS_DELETED, null, Map.of("ids", existingIds, "deleted", deleted));
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes all products matching a filter, a null criterion matches every product
+     *
+     * @param name        exact name of the Products to delete, or null
+     * @param maxQuantity delete Products with at most this quantity, or null
+     * @return number of deleted products
+     */
+    @Transactional
+    public int deleteByFilter(String name, Integer maxQuantity) {
+        LOGGER.info("Deleting products with name:{} and quantity up to:{}", name, maxQuantity);
+        List<Integer> matchingIds = productRepository.findProductIdsByFilter(name, maxQuantity);
+        int deleted = deleteExisting(matchingIds);
+        if (deleted > 0) {
+            Map<String, Object> filter = new LinkedHashMap<>();
+            filter.put("name", name);
+            filter.put("maxQuantity", maxQuantity);
+            filter.put("ids", matchingIds);
+            filter.put("deleted", deleted);
+            outbox.record(Outbox.PRODUCTS_DELETED, null, filter);
+        }
+        return deleted;
+    }
+
+    // only the ids read in this transaction are deleted, so the event lists exactly the removed products
+    private int deleteExisting(List<Integer> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        int deleted = productRepository.deleteProductsByIdIn(ids);
+        if (deleted > 0) {
+            Set<Integer> deletedIds = new HashSet<>(ids);
+            productCatalog.removeIf(product -> deletedIds.contains(product.getId()));
+        }
+        return deleted;
+    }
+
+    /**
+     * Reads only some columns of a product
+     *
+     * @param id     id of the Product to read
+     * @param fields Product attribute names to read
+     * @return attribute names mapped to their values, or null if no Product found
+     */
+    public Map<String, Object> findFieldsById(Integer id, Set<String> fields) {
+        LOGGER.info("Finding fields:{} of product by id:{}", fields, id);
+        return productRepository.findFieldsById(id, fields).orElse(null);
     }
 
     public Iterable<Product> findAll() {
-        return productRepository.findAll();
+        return productCatalog.snapshot().getProducts();
+    }
+
+    /**
+     * Gets the recorded quantity changes of a product
+     *
+     * @param id   id of the Product
+     * @param from start of the range, inclusive, from the first change if null
+     * @param to   end of the range, exclusive, until now if null
+     * @return changes in time order, or null if neither the Product nor any history of it exists
+     * @throws IllegalArgumentException if the range holds too many changes
+     */
+    public List<StockPoint> findStockHistory(Integer id, Instant from, Instant to) {
+        LOGGER.info("Finding stock history of product by id:{} from:{} to:{}", id, from, to);
+        if (!hasStockHistory(id)) {
+            return null;
+        }
+        return stockHistory.range(id, from, to);
+    }
+
+    /**
+     * Gets the quantity of a product downsampled to buckets of one step
+     *
+     * @param id   id of the Product
+     * @param from start of the first bucket, from the first change if null
+     * @param to   end of the range, exclusive, until now if null
+     * @param step bucket size
+     * @return buckets in time order, or null if neither the Product nor any history of it exists
+     * @throws IllegalArgumentException if the step is not positive or the range has too many buckets
+     */
+    public List<StockRollup> findStockRollups(Integer id, Instant from, Instant to, Duration step) {
+        LOGGER.info("Finding stock rollups of product by id:{} from:{} to:{} step:{}", id, from, to, step);
+        if (!hasStockHistory(id)) {
+            return null;
+        }
+        return stockHistory.rollup(id, from, to, step);
+    }
+
+    private boolean hasStockHistory(Integer id) {
+        // the history outlives a deleted product
+        return stockHistory.contains(id) || productRepository.findProductById(id) != null;
+    }
+
+    /**
+     * Gets the current immutable snapshot of all products
+     *
+     * @return catalog snapshot, its version identifies the content of the whole collection
+     */
+    public ProductCatalogSnapshot findAllSnapshot() {
+        return productCatalog.snapshot();
     }
 }
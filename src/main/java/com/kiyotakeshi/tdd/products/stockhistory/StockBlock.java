@@ -0,0 +1,191 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Run of consecutive stock points stored column by column.
+ * The first point is kept as is. Every following timestamp is stored as the change of the gap to the previous one
+ * and every quantity as the change to the previous one, both zigzag varint encoded.
+ * Changes at a steady rate take one byte for the timestamp, small stock movements one byte for the quantity.
+ * Points are only appended, a full block is sealed and never changes again.
+ */
+class StockBlock {
+
+    private final long firstMillis;
+    private final int firstQuantity;
+
+    private long lastMillis;
+    private int lastQuantity;
+    private int count;
+    // gap between the last two points, only needed while appending
+    private long lastGap;
+
+    private byte[] timestamps;
+    private int timestampsSize;
+    private byte[] quantities;
+    private int quantitiesSize;
+
+    StockBlock(long millis, int quantity) {
+        this(millis, quantity, millis, quantity, 1, new byte[16], 0, new byte[16], 0);
+    }
+
+    private StockBlock(long firstMillis, int firstQuantity, long lastMillis, int lastQuantity, int count,
+                       byte[] timestamps, int timestampsSize, byte[] quantities, int quantitiesSize) {
+        this.firstMillis = firstMillis;
+        this.firstQuantity = firstQuantity;
+        this.lastMillis = lastMillis;
+        this.lastQuantity = lastQuantity;
+        this.count = count;
+        this.timestamps = timestamps;
+        this.timestampsSize = timestampsSize;
+        this.quantities = quantities;
+        this.quantitiesSize = quantitiesSize;
+    }
+
+    /**
+     * @param millis   not before the last point of the block
+     * @param quantity quantity from this point on
+     */
+    void append(long millis, int quantity) {
+        timestamps = ensureCapacity(timestamps, timestampsSize);
+        long gap = millis - lastMillis;
+        timestampsSize = writeVarLong(timestamps, timestampsSize, zigzag(gap - lastGap));
+        lastGap = gap;
+        quantities = ensureCapacity(quantities, quantitiesSize);
+        quantitiesSize = writeVarLong(quantities, quantitiesSize, zigzag((long) quantity - lastQuantity));
+        lastMillis = millis;
+        lastQuantity = quantity;
+        count++;
+    }
+
+    /**
+     * Drops the spare capacity of the columns once no more points are appended
+     */
+    void seal() {
+        timestamps = Arrays.copyOf(timestamps, timestampsSize);
+        quantities = Arrays.copyOf(quantities, quantitiesSize);
+    }
+
+    /**
+     * Decodes the points from the first one until the visitor stops
+     */
+    void scan(PointVisitor visitor) {
+        long millis = firstMillis;
+        long quantity = firstQuantity;
+        if (!visitor.visit(millis, (int) quantity)) {
+            return;
+        }
+        int timestampOffset = 0;
+        int quantityOffset = 0;
+        long gap = 0;
+        for (int i = 1; i < count; i++) {
+            long gapChange = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = timestamps[timestampOffset++];
+                gapChange |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            long change = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = quantities[quantityOffset++];
+                change |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            gap += (gapChange >>> 1) ^ -(gapChange & 1);
+            millis += gap;
+            quantity += (change >>> 1) ^ -(change & 1);
+            if (!visitor.visit(millis, (int) quantity)) {
+                return;
+            }
+        }
+    }
+
+    long getFirstMillis() {
+        return firstMillis;
+    }
+
+    long getLastMillis() {
+        return lastMillis;
+    }
+
+    int getLastQuantity() {
+        return lastQuantity;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @return bytes held by the block, including the fixed size header
+     */
+    long getEncodedBytes() {
+        return 32L + timestamps.length + quantities.length;
+    }
+
+    /**
+     * @return length of the block as written by {@link #write(DataOutput)}
+     */
+    int getSerializedBytes() {
+        return 36 + timestampsSize + quantitiesSize;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeInt(count);
+        out.writeLong(firstMillis);
+        out.writeInt(firstQuantity);
+        out.writeLong(lastMillis);
+        out.writeInt(lastQuantity);
+        out.writeInt(timestampsSize);
+        out.write(timestamps, 0, timestampsSize);
+        out.writeInt(quantitiesSize);
+        out.write(quantities, 0, quantitiesSize);
+    }
+
+    static StockBlock read(DataInput in) throws IOException {
+        int count = in.readInt();
+        long firstMillis = in.readLong();
+        int firstQuantity = in.readInt();
+        long lastMillis = in.readLong();
+        int lastQuantity = in.readInt();
+        byte[] timestamps = new byte[in.readInt()];
+        in.readFully(timestamps);
+        byte[] quantities = new byte[in.readInt()];
+        in.readFully(quantities);
+        return new StockBlock(firstMillis, firstQuantity, lastMillis, lastQuantity, count,
+                timestamps, timestamps.length, quantities, quantities.length);
+    }
+
+    private static byte[] ensureCapacity(byte[] column, int size) {
+        // a varint of a long takes at most 10 bytes
+        return size + 10 <= column.length ? column : Arrays.copyOf(column, Math.max(column.length * 2, size + 10));
+    }
+
+    private static int writeVarLong(byte[] column, int offset, long value) {
+        while ((value & ~0x7fL) != 0) {
+            column[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        column[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    interface PointVisitor {
+
+        /**
+         * @return false to stop the scan
+         */
+        boolean visit(long millis, int quantity);
+    }
+}
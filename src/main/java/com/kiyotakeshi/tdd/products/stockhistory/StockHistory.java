@@ -0,0 +1,284 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Quantity over time of every product, fed from committed quantity changes.
+ * Each product has an append-only {@link StockSeries} of delta encoded, column oriented blocks.
+ * With a directory configured every sealed block is appended to the product's {@code <id>.stock} file
+ * in the same encoding, the files are read back on startup and the partly filled blocks are written on close.
+ */
+public class StockHistory implements AutoCloseable {
+
+    private static final Logger LOGGER = LogManager.getLogger(StockHistory.class);
+
+    private static final String FILE_SUFFIX = ".stock";
+
+    private final int blockSize;
+    private final int maxBuckets;
+    private final int maxPoints;
+    private final Path directory;
+    private final Clock clock;
+
+    private final Map<Integer, StockSeries> series = new ConcurrentHashMap<>();
+
+    public StockHistory(StockHistoryProperties properties, Clock clock) {
+        this.blockSize = properties.getBlockSize();
+        this.maxBuckets = properties.getMaxBuckets();
+        this.maxPoints = properties.getMaxPoints();
+        this.directory = properties.getDirectory();
+        this.clock = clock;
+        if (directory != null) {
+            load();
+        }
+    }
+
+    /**
+     * Records the quantity of a product once the current transaction commits,
+     * nothing is recorded if the quantity did not change.
+     * Commit callbacks of concurrent writes can run in any order, so a change with a version
+     * older than the last recorded one is dropped instead of overwriting the newer quantity.
+     *
+     * @param productId id of the Product
+     * @param version   version of the Product with this quantity, not checked if null
+     * @param quantity  its quantity from now on, ignored if null
+     */
+    public void record(Integer productId, Integer version, Integer quantity) {
+        if (productId == null || quantity == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(productId, version, quantity);
+                }
+            });
+        } else {
+            append(productId, version, quantity);
+        }
+    }
+
+    /**
+     * @return true if any quantity of the product was recorded
+     */
+    public boolean contains(Integer productId) {
+        return series.containsKey(productId);
+    }
+
+    /**
+     * Gets the recorded changes of a product
+     *
+     * @param from start of the range, inclusive, from the first change if null
+     * @param to   end of the range, exclusive, until now if null
+     * @return changes in time order, empty if none
+     * @throws IllegalArgumentException if the range is empty or out of range, or holds more than max-points changes
+     */
+    public List<StockPoint> range(Integer productId, Instant from, Instant to) {
+        StockSeries productSeries = series.get(productId);
+        if (productSeries == null) {
+            return List.of();
+        }
+        List<StockPoint> points;
+        synchronized (productSeries) {
+            long fromMillis = fromMillis(productSeries, from);
+            long toMillis = toMillis(to);
+            checkRange(fromMillis, toMillis);
+            // one more than allowed tells a full range from an oversized one
+            points = productSeries.range(fromMillis, toMillis, maxPoints + 1);
+        }
+        if (points.size() > maxPoints) {
+            throw new IllegalArgumentException("more than " + maxPoints + " changes, narrow the range or use a step");
+        }
+        return points;
+    }
+
+    /**
+     * Downsamples the quantity of a product to fixed size buckets
+     *
+     * @param from start of the first bucket, from the first change if null
+     * @param to   end of the range, exclusive, until now if null
+     * @param step bucket size
+     * @return buckets in time order, starting with the first one the product had a quantity in
+     * @throws IllegalArgumentException if the step is not positive, the range is empty or out of range,
+     *                                  or it needs more than max-buckets buckets
+     */
+    public List<StockRollup> rollup(Integer productId, Instant from, Instant to, Duration step) {
+        long stepMillis;
+        try {
+            stepMillis = step.toMillis();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("step out of range: " + step);
+        }
+        if (stepMillis <= 0) {
+            throw new IllegalArgumentException("step must be at least 1ms");
+        }
+        StockSeries productSeries = series.get(productId);
+        if (productSeries == null) {
+            return List.of();
+        }
+        synchronized (productSeries) {
+            long fromMillis = fromMillis(productSeries, from);
+            long toMillis = toMillis(to);
+            checkRange(fromMillis, toMillis);
+            long buckets;
+            try {
+                buckets = Math.floorDiv(Math.subtractExact(toMillis, fromMillis), stepMillis);
+            } catch (ArithmeticException e) {
+                buckets = Long.MAX_VALUE;
+            }
+            if (buckets >= maxBuckets) {
+                throw new IllegalArgumentException("more than " + maxBuckets + " buckets of " + step);
+            }
+            return productSeries.rollup(fromMillis, toMillis, stepMillis);
+        }
+    }
+
+    /**
+     * @return number of recorded changes of all products
+     */
+    public long getPointCount() {
+        long count = 0;
+        for (StockSeries productSeries : series.values()) {
+            synchronized (productSeries) {
+                count += productSeries.getCount();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return bytes of encoded history held in memory
+     */
+    public long getEncodedBytes() {
+        long bytes = 0;
+        for (StockSeries productSeries : series.values()) {
+            synchronized (productSeries) {
+                bytes += productSeries.getEncodedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the partly filled blocks, so a restart reads back every recorded change
+     */
+    @Override
+    public void close() {
+        if (directory == null) {
+            return;
+        }
+        series.forEach((productId, productSeries) -> {
+            synchronized (productSeries) {
+                StockBlock sealed = productSeries.seal();
+                if (sealed != null) {
+                    write(productId, sealed);
+                }
+            }
+        });
+    }
+
+    private void append(Integer productId, Integer version, int quantity) {
+        StockSeries productSeries = series.computeIfAbsent(productId, id -> new StockSeries(blockSize));
+        synchronized (productSeries) {
+            StockBlock sealed = productSeries.append(clock.millis(), version, quantity);
+            if (sealed != null && directory != null) {
+                write(productId, sealed);
+            }
+        }
+    }
+
+    private long fromMillis(StockSeries productSeries, Instant from) {
+        if (from != null) {
+            return epochMillis(from);
+        }
+        Long first = productSeries.getFirstMillis();
+        return first == null ? clock.millis() : first;
+    }
+
+    private long toMillis(Instant to) {
+        return to == null ? clock.millis() + 1 : epochMillis(to);
+    }
+
+    private static long epochMillis(Instant instant) {
+        try {
+            return instant.toEpochMilli();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("instant out of range: " + instant);
+        }
+    }
+
+    private static void checkRange(long fromMillis, long toMillis) {
+        if (fromMillis >= toMillis) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+    }
+
+    private void write(Integer productId, StockBlock block) {
+        Path file = directory.resolve(productId + FILE_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+            block.write(out);
+        } catch (IOException e) {
+            // the block stays in memory, only a restart would lose it
+            LOGGER.error("Could not write stock history of product {} to {}", productId, file, e);
+        }
+    }
+
+    private void load() {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    Integer productId = Integer.valueOf(name.substring(0, name.length() - FILE_SUFFIX.length()));
+                    series.put(productId, read(file));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read stock history from " + directory, e);
+        }
+        LOGGER.info("Loaded stock history of {} products with {} changes", series.size(), getPointCount());
+    }
+
+    private StockSeries read(Path file) throws IOException {
+        StockSeries productSeries = new StockSeries(blockSize);
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (in.available() > 0) {
+                StockBlock block = StockBlock.read(in);
+                productSeries.load(block);
+                valid += block.getSerializedBytes();
+            }
+        } catch (EOFException e) {
+            // a block cut short by a crash while it was written, cut it off so new blocks can be appended
+            LOGGER.warn("Dropping truncated block at the end of {}", file);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return productSeries;
+    }
+}
@@ -0,0 +1,17 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+@Configuration
+@EnableConfigurationProperties(StockHistoryProperties.class)
+public class StockHistoryConfiguration {
+
+    @Bean
+    public StockHistory stockHistory(StockHistoryProperties properties) {
+        return new StockHistory(properties, Clock.systemUTC());
+    }
+}
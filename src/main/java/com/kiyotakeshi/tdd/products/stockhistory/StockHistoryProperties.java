@@ -0,0 +1,66 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+import java.nio.file.Path;
+
+/**
+ * Settings of the per product stock history, bound from {@code products.stock-history}
+ */
+@Validated
+@ConfigurationProperties("products.stock-history")
+public class StockHistoryProperties {
+
+    /** points per block, a full block is sealed and appended to its product file */
+    @Min(1)
+    private int blockSize = 1024;
+
+    /** most buckets one rollup query may return */
+    @Min(1)
+    private int maxBuckets = 10_000;
+
+    /** most changes one range query without a step may return */
+    // at most Integer.MAX_VALUE - 1, range queries decode one point more than allowed
+    @Min(1)
+    @Max(Integer.MAX_VALUE - 1)
+    private int maxPoints = 10_000;
+
+    /** directory of the product files, the history is kept in memory only if missing */
+    private Path directory;
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public void setBlockSize(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    public void setMaxPoints(int maxPoints) {
+        this.maxPoints = maxPoints;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+}
@@ -0,0 +1,34 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import java.time.Instant;
+
+/**
+ * Quantity of a product from a point in time until the next change
+ */
+public class StockPoint {
+
+    private final Instant timestamp;
+
+    private final int quantity;
+
+    public StockPoint(Instant timestamp, int quantity) {
+        this.timestamp = timestamp;
+        this.quantity = quantity;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "StockPoint{" +
+                "timestamp=" + timestamp +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
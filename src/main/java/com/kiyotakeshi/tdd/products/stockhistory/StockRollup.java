@@ -0,0 +1,72 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import java.time.Instant;
+
+/**
+ * Quantity of a product downsampled to one time bucket.
+ * Quantity is a step function, so open is the quantity in effect when the bucket starts
+ * (set by the last change before it, or the first change of a product's first bucket),
+ * close the quantity when it ends, and high and low cover every quantity in effect during the bucket.
+ */
+public class StockRollup {
+
+    private final Instant start;
+
+    private final int open;
+
+    private final int high;
+
+    private final int low;
+
+    private final int close;
+
+    private final int changes;
+
+    public StockRollup(Instant start, int open, int high, int low, int close, int changes) {
+        this.start = start;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.changes = changes;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public int getOpen() {
+        return open;
+    }
+
+    public int getHigh() {
+        return high;
+    }
+
+    public int getLow() {
+        return low;
+    }
+
+    public int getClose() {
+        return close;
+    }
+
+    /**
+     * @return number of quantity changes within the bucket
+     */
+    public int getChanges() {
+        return changes;
+    }
+
+    @Override
+    public String toString() {
+        return "StockRollup{" +
+                "start=" + start +
+                ", open=" + open +
+                ", high=" + high +
+                ", low=" + low +
+                ", close=" + close +
+                ", changes=" + changes +
+                '}';
+    }
+}
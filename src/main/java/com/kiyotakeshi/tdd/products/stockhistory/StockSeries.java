@@ -0,0 +1,249 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only quantity history of one product, a list of sealed {@link StockBlock}s plus the block being filled.
+ * Blocks are ordered by time, so a range query binary searches the first block it needs
+ * and decodes only the blocks overlapping the range.
+ * Not thread safe, {@link StockHistory} synchronizes on the series.
+ */
+class StockSeries {
+
+    private final int blockSize;
+
+    private final List<StockBlock> blocks = new ArrayList<>();
+
+    private StockBlock open;
+
+    // highest Product version recorded since startup, versions are not kept in the blocks
+    private int lastVersion;
+
+    StockSeries(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Adds a sealed block read back from disk
+     */
+    void load(StockBlock block) {
+        blocks.add(block);
+    }
+
+    /**
+     * Records a quantity, unless it did not change or a newer version was already recorded
+     *
+     * @param millis   timestamp, moved up to the last point if the clock went backwards
+     * @param version  Product version of the quantity, or null to skip the check
+     * @param quantity quantity from this point on
+     * @return the block sealed by this point, or null
+     */
+    StockBlock append(long millis, Integer version, int quantity) {
+        if (version != null) {
+            // older only, like ProductCatalogSnapshot, writes that do not bump the version are kept in callback order
+            if (version < lastVersion) {
+                return null;
+            }
+            lastVersion = version;
+        }
+        StockBlock last = last();
+        if (last != null) {
+            if (last.getLastQuantity() == quantity) {
+                return null;
+            }
+            millis = Math.max(millis, last.getLastMillis());
+        }
+        if (open == null) {
+            open = new StockBlock(millis, quantity);
+        } else {
+            open.append(millis, quantity);
+        }
+        return open.getCount() >= blockSize ? seal() : null;
+    }
+
+    /**
+     * Seals the block being filled, so it can be written out
+     *
+     * @return the sealed block, or null if there was none
+     */
+    StockBlock seal() {
+        StockBlock sealed = open;
+        if (sealed != null) {
+            sealed.seal();
+            blocks.add(sealed);
+            open = null;
+        }
+        return sealed;
+    }
+
+    /**
+     * @return timestamp of the first point, or null if there is none
+     */
+    Long getFirstMillis() {
+        if (!blocks.isEmpty()) {
+            return blocks.get(0).getFirstMillis();
+        }
+        return open == null ? null : open.getFirstMillis();
+    }
+
+    int getCount() {
+        int count = open == null ? 0 : open.getCount();
+        for (StockBlock block : blocks) {
+            count += block.getCount();
+        }
+        return count;
+    }
+
+    long getEncodedBytes() {
+        long bytes = open == null ? 0 : open.getEncodedBytes();
+        for (StockBlock block : blocks) {
+            bytes += block.getEncodedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @param limit most points to decode
+     * @return points with fromMillis <= timestamp < toMillis, at most limit of them
+     */
+    List<StockPoint> range(long fromMillis, long toMillis, int limit) {
+        List<StockPoint> points = new ArrayList<>();
+        scan(fromMillis, toMillis, (millis, quantity) -> {
+            if (millis >= fromMillis) {
+                points.add(new StockPoint(Instant.ofEpochMilli(millis), quantity));
+            }
+            return points.size() < limit;
+        });
+        return points;
+    }
+
+    /**
+     * Downsamples the quantity to buckets of stepMillis starting at fromMillis,
+     * buckets before the first point are left out
+     */
+    List<StockRollup> rollup(long fromMillis, long toMillis, long stepMillis) {
+        Rollup rollup = new Rollup(fromMillis, stepMillis);
+        scan(fromMillis, toMillis, (millis, quantity) -> {
+            rollup.add(millis, quantity);
+            return true;
+        });
+        return rollup.finish(toMillis);
+    }
+
+    /**
+     * Visits the last point before fromMillis, if any, and every point up to toMillis until the visitor stops
+     */
+    private void scan(long fromMillis, long toMillis, StockBlock.PointVisitor visitor) {
+        List<StockBlock> all = new ArrayList<>(blocks.size() + 1);
+        all.addAll(blocks);
+        if (open != null) {
+            all.add(open);
+        }
+
+        // first block ending at or after fromMillis, the blocks before it only matter through their last point
+        int low = 0;
+        int high = all.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (all.get(mid).getLastMillis() < fromMillis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low > 0) {
+            StockBlock previous = all.get(low - 1);
+            if (!visitor.visit(previous.getLastMillis(), previous.getLastQuantity())) {
+                return;
+            }
+        }
+
+        boolean[] stopped = {false};
+        for (int i = low; i < all.size() && all.get(i).getFirstMillis() < toMillis && !stopped[0]; i++) {
+            all.get(i).scan((millis, quantity) -> {
+                if (millis >= toMillis || !visitor.visit(millis, quantity)) {
+                    stopped[0] = true;
+                    return false;
+                }
+                return true;
+            });
+        }
+    }
+
+    private StockBlock last() {
+        if (open != null) {
+            return open;
+        }
+        return blocks.isEmpty() ? null : blocks.get(blocks.size() - 1);
+    }
+
+    /**
+     * Folds points, in time order, into buckets
+     */
+    private static class Rollup {
+
+        private final long fromMillis;
+        private final long stepMillis;
+        private final List<StockRollup> rollups = new ArrayList<>();
+
+        // quantity in effect, null until the first point
+        private Integer current;
+        private long bucketStart;
+        private int open;
+        private int high;
+        private int low;
+        private int changes;
+
+        Rollup(long fromMillis, long stepMillis) {
+            this.fromMillis = fromMillis;
+            this.stepMillis = stepMillis;
+            this.bucketStart = fromMillis;
+        }
+
+        void add(long millis, int quantity) {
+            if (millis < fromMillis) {
+                current = quantity;
+                startBucket(fromMillis);
+                return;
+            }
+            long start = fromMillis + (millis - fromMillis) / stepMillis * stepMillis;
+            if (current == null) {
+                current = quantity;
+                bucketStart = start;
+                open = high = low = quantity;
+                changes = 1;
+                return;
+            }
+            closeBucketsUntil(start);
+            current = quantity;
+            high = Math.max(high, quantity);
+            low = Math.min(low, quantity);
+            changes++;
+        }
+
+        List<StockRollup> finish(long toMillis) {
+            if (current != null) {
+                closeBucketsUntil(toMillis);
+            }
+            return rollups;
+        }
+
+        /**
+         * Emits the current bucket and the unchanged buckets after it, up to the one starting at start
+         */
+        private void closeBucketsUntil(long start) {
+            while (bucketStart < start) {
+                rollups.add(new StockRollup(Instant.ofEpochMilli(bucketStart), open, high, low, current, changes));
+                startBucket(bucketStart + stepMillis);
+            }
+        }
+
+        private void startBucket(long start) {
+            bucketStart = start;
+            open = high = low = current;
+            changes = 0;
+        }
+    }
+}
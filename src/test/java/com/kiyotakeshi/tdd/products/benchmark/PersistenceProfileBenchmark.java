@@ -0,0 +1,110 @@
+package com.kiyotakeshi.tdd.products.benchmark;
+
+import com.kiyotakeshi.tdd.products.ProductsApplication;
+import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.service.ProductService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load-test harness comparing ProductService throughput with the default persistence settings
+ * and the {@code read-heavy} and {@code write-heavy} profiles.
+ * Each profile runs in its own application context on its own in-memory H2 database,
+ * seeded with products and driven with read-only, write-only and mixed (80% read) workloads.
+ * <p>
+ * Run the main method with the test classpath. {@code -Dbenchmark.products}, {@code -Dbenchmark.threads}
+ * and {@code -Dbenchmark.seconds} size the runs.
+ */
+public class PersistenceProfileBenchmark {
+
+    private static final String[] PROFILES = {"default", "read-heavy", "write-heavy"};
+
+    public static void main(String[] args) throws Exception {
+        int products = Integer.getInteger("benchmark.products", 1_000);
+        int threads = Integer.getInteger("benchmark.threads", 8);
+        int seconds = Integer.getInteger("benchmark.seconds", 5);
+
+        System.out.printf("%-12s %14s %14s %14s%n", "profile", "read ops/s", "write ops/s", "mixed ops/s");
+        for (String profile : PROFILES) {
+            try (ConfigurableApplicationContext context = start(profile)) {
+                ProductService productService = context.getBean(ProductService.class);
+                List<Integer> ids = seed(productService, products);
+
+                // warmup
+                run(productService, ids, threads, 1, 80);
+                long read = run(productService, ids, threads, seconds, 100);
+                long write = run(productService, ids, threads, seconds, 0);
+                long mixed = run(productService, ids, threads, seconds, 80);
+                System.out.printf("%-12s %14d %14d %14d%n", profile, read / seconds, write / seconds, mixed / seconds);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String profile) {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(ProductsApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + profile,
+                        "products.rate-limit.enabled=false",
+                        "logging.level.root=WARN");
+        if (!"default".equals(profile)) {
+            builder.profiles(profile);
+        }
+        return builder.run();
+    }
+
+    private static List<Integer> seed(ProductService productService, int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = productService.save(new Product("product " + i, "description of product " + i, i));
+            ids.add(product.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * @param readPercent share of operations that are reads, the rest are read-modify-write updates
+     * @return number of completed operations
+     */
+    private static long run(ProductService productService, List<Integer> ids, int threads, int seconds, int readPercent)
+            throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        Integer id = ids.get(random.nextInt(ids.size()));
+                        Product product = productService.findById(id);
+                        if (random.nextInt(100) >= readPercent) {
+                            product.setQuantity(random.nextInt(1_000));
+                            productService.update(product, product.getVersion());
+                        }
+                        count++;
+                    }
+                    return count;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.kiyotakeshi.tdd.products.benchmark;
+
+import com.kiyotakeshi.tdd.products.ratelimit.EndpointClass;
+import com.kiyotakeshi.tdd.products.ratelimit.RateLimitDecision;
+import com.kiyotakeshi.tdd.products.ratelimit.RateLimitProperties;
+import com.kiyotakeshi.tdd.products.ratelimit.RateLimiter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per request overhead of {@link RateLimiter#acquire(String, EndpointClass)}
+ * with one hot client and with many distinct clients, single threaded and with several threads.
+ * <p>
+ * Run the main method from the IDE or with the test classpath,
+ * {@code -Dbenchmark.seconds} sets the measurement time of each scenario.
+ */
+public class RateLimiterBenchmark {
+
+    private static final int CLIENTS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        int seconds = Integer.getInteger("benchmark.seconds", 3);
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        String[] clients = new String[CLIENTS];
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = "client-" + i;
+        }
+
+        System.out.printf("%-28s %12s%n", "scenario", "ns/op");
+        report("1 client, 1 thread", measure(new String[]{"client-0"}, 1, seconds));
+        report(CLIENTS + " clients, 1 thread", measure(clients, 1, seconds));
+        report("1 client, " + threads + " threads", measure(new String[]{"client-0"}, threads, seconds));
+        report(CLIENTS + " clients, " + threads + " threads", measure(clients, threads, seconds));
+    }
+
+    private static double measure(String[] clients, int threads, int seconds) throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(unlimited());
+        // warmup
+        run(rateLimiter, clients, threads, TimeUnit.SECONDS.toNanos(1));
+        long operations = run(rateLimiter, clients, threads, TimeUnit.SECONDS.toNanos(seconds));
+        return (double) TimeUnit.SECONDS.toNanos(seconds) * threads / operations;
+    }
+
+    private static long run(RateLimiter rateLimiter, String[] clients, int threads, long nanos) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long deadline = System.nanoTime() + nanos;
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures[t] = executor.submit(() -> {
+                    long count = 0;
+                    int i = offset;
+                    while ((count & 1023) != 0 || System.nanoTime() < deadline) {
+                        RateLimitDecision decision = rateLimiter.acquire(clients[i++ % clients.length], EndpointClass.LIST);
+                        rateLimiter.release(decision);
+                        count++;
+                    }
+                    return count;
+                });
+            }
+            long total = 0;
+            for (Future<?> future : futures) {
+                total += (Long) future.get();
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // limits high enough that every request is admitted, so only the bookkeeping is measured
+    private static RateLimitProperties unlimited() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setList(new RateLimitProperties.Limit(Integer.MAX_VALUE, 1e12));
+        properties.setListMaxConcurrent(Integer.MAX_VALUE);
+        properties.setMaxClients(CLIENTS * 2);
+        return properties;
+    }
+
+    private static void report(String scenario, double nanosPerOperation) {
+        System.out.printf("%-28s %12.1f%n", scenario, nanosPerOperation);
+    }
+}
@@ -0,0 +1,215 @@
+package com.kiyotakeshi.tdd.products.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares time-to-first-request, resident memory and steady-state throughput of ProductsApplication
+ * with the default configuration, the {@code startup} profile and the {@code startup} profile with AppCDS.
+ * Every configuration is started in a fresh process, JVM configurations use the plain jar built by the {@code startup} Maven profile.
+ * <p>
+ * Run with {@code ./mvnw -Pstartup verify exec:exec@startup-benchmark},
+ * the number of runs per configuration can be set with {@code -Dbenchmark.runs},
+ * the length of the throughput measurement with {@code -Dbenchmark.throughput-seconds}.
+ */
+public class StartupBenchmark {
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private static final int THROUGHPUT_THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int runs = Integer.getInteger("benchmark.runs", 5);
+        int throughputSeconds = Integer.getInteger("benchmark.throughput-seconds", 5);
+        Path jar = Paths.get(args.length > 0 ? args[0] : "target/products-0.0.1-SNAPSHOT.jar");
+        Path archive = Paths.get(args.length > 1 ? args[1] : "target/products.jsa");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+
+        List<Configuration> configurations = new ArrayList<>();
+        configurations.add(new Configuration("default", List.of(java, "-jar", jar.toString())));
+        configurations.add(new Configuration("startup",
+                List.of(java, "-jar", jar.toString(), "--spring.profiles.active=startup")));
+        if (Files.exists(archive)) {
+            configurations.add(new Configuration("startup+appcds",
+                    List.of(java, "-XX:SharedArchiveFile=" + archive, "-jar", jar.toString(), "--spring.profiles.active=startup")));
+        } else {
+            System.out.println("No AppCDS archive at " + archive + ", skipping startup+appcds");
+        }
+
+        System.out.printf("%-16s %28s %22s %18s%n", "configuration",
+                "first request ms (median/min)", "RSS MiB (median/min)", "req/s (median)");
+        for (Configuration configuration : configurations) {
+            long[] millis = new long[runs];
+            long[] rss = new long[runs];
+            long[] throughput = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                Result result = run(configuration, throughputSeconds);
+                millis[i] = result.firstRequestMillis;
+                rss[i] = result.rssKib;
+                throughput[i] = result.requestsPerSecond;
+            }
+            System.out.printf("%-16s %19d / %6d %14s / %5s %18d%n", configuration.name,
+                    median(millis), Arrays.stream(millis).min().orElse(0),
+                    mib(median(rss)), mib(Arrays.stream(rss).min().orElse(-1)),
+                    median(throughput));
+        }
+    }
+
+    private static Result run(Configuration configuration, int throughputSeconds) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(configuration.command);
+        command.add("--server.port=" + port);
+        // the throughput measurement comes from one client, which the list rate limit would cap at its refill rate
+        command.add("--products.rate-limit.enabled=false");
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.to(new File(System.getProperty("java.io.tmpdir"), "startup-benchmark.log")))
+                .start();
+        try {
+            URL url = new URL("http://localhost:" + port + "/products");
+            while (!isOk(url)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException(configuration.name + " exited with " + process.exitValue());
+                }
+                if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) > TIMEOUT_MILLIS) {
+                    throw new IllegalStateException(configuration.name + " did not answer within " + TIMEOUT_MILLIS + "ms");
+                }
+                Thread.sleep(5);
+            }
+            long firstRequestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long rssKib = rssKib(process.pid());
+            long requestsPerSecond = throughput(url, throughputSeconds);
+            return new Result(firstRequestMillis, rssKib, requestsPerSecond);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Sends GET requests from several threads for the given time, after a warmup of the same length
+     *
+     * @return successful requests per second
+     */
+    private static long throughput(URL url, int seconds) throws Exception {
+        if (seconds <= 0) {
+            return 0;
+        }
+        hammer(url, seconds);
+        return hammer(url, seconds) / seconds;
+    }
+
+    private static long hammer(URL url, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(THROUGHPUT_THREADS);
+        try {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < THROUGHPUT_THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    long count = 0;
+                    while (System.nanoTime() < deadline) {
+                        if (isOk(url)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> future : futures) {
+                total += future.get();
+            }
+            return total;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isOk(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(100);
+            try {
+                return connection.getResponseCode() == 200;
+            } finally {
+                connection.disconnect();
+            }
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the resident set size of a process, only available on Linux
+     *
+     * @return RSS in KiB or -1 if unknown
+     */
+    private static long rssKib(long pid) {
+        Path status = Paths.get("/proc", Long.toString(pid), "status");
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("\\D", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // not on Linux
+        }
+        return -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static String mib(long kib) {
+        return kib < 0 ? "n/a" : Long.toString(kib / 1024);
+    }
+
+    private static class Configuration {
+        private final String name;
+        private final List<String> command;
+
+        Configuration(String name, List<String> command) {
+            this.name = name;
+            this.command = command;
+        }
+    }
+
+    private static class Result {
+        private final long firstRequestMillis;
+        private final long rssKib;
+        private final long requestsPerSecond;
+
+        Result(long firstRequestMillis, long rssKib, long requestsPerSecond) {
+            this.firstRequestMillis = firstRequestMillis;
+            this.rssKib = rssKib;
+            this.requestsPerSecond = requestsPerSecond;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.kiyotakeshi.tdd.products.config;
+
+import com.kiyotakeshi.tdd.products.ProductsApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.validation.BindValidationException;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenceTuningPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PersistenceTuningConfiguration.class);
+
+    @Test
+    @DisplayName("Bind valid persistence settings")
+    void testValidSettings() {
+        contextRunner.withPropertyValues("products.persistence.pool-size=20", "products.persistence.batch-size=50")
+                .run(context -> {
+                    var properties = context.getBean(PersistenceTuningProperties.class);
+                    assertEquals(20, properties.getPoolSize());
+                    assertEquals(50, properties.getBatchSize());
+                });
+    }
+
+    @Test
+    @DisplayName("Fail to start with out of range settings")
+    void testOutOfRangeSettings() {
+        contextRunner.withPropertyValues("products.persistence.pool-size=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    @DisplayName("Fail to start with more idle connections than the pool size")
+    void testMinIdleGreaterThanPoolSize() {
+        contextRunner.withPropertyValues("products.persistence.pool-size=5", "products.persistence.min-idle=10")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    @DisplayName("Fail to start the lazily initialized startup profile with out of range settings")
+    void testOutOfRangeSettingsWithStartupProfile() {
+        var builder = new SpringApplicationBuilder(ProductsApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("startup")
+                .properties(
+                        "spring.main.banner-mode=off",
+                        "spring.datasource.url=jdbc:h2:mem:persistence-tuning-startup");
+
+        // arguments, default properties would be overridden by application.yaml
+        var exception = assertThrows(Exception.class,
+                () -> builder.run("--products.persistence.fetch-size=-5", "--server.port=0"));
+
+        Throwable cause = exception;
+        while (cause != null && !(cause instanceof BindValidationException)) {
+            cause = cause.getCause();
+        }
+        assertNotNull(cause, "startup failed for another reason: " + exception);
+    }
+}
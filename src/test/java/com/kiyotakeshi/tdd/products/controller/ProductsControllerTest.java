@@ -2,7 +2,10 @@ package com.kiyotakeshi.tdd.products.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.service.ProductCatalogSnapshot;
 import com.kiyotakeshi.tdd.products.service.ProductService;
+import com.kiyotakeshi.tdd.products.stockhistory.StockPoint;
+import com.kiyotakeshi.tdd.products.stockhistory.StockRollup;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,11 +19,18 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -55,6 +65,61 @@ class ProductsControllerTest {
                 .andExpect(jsonPath("$.version", is(1)));
     }
 
+    @Test
+    @DisplayName("Test stock history found - GET /products/1/stock-history")
+    void testStockHistoryFound() throws Exception {
+        var from = Instant.parse("2021-10-01T00:00:00Z");
+        var history = List.of(
+                new StockPoint(from, 8),
+                new StockPoint(from.plusSeconds(60), 5));
+
+        doReturn(history).when(productService).findStockHistory(1, from, null);
+
+        mockMvc.perform(get("/products/{id}/stock-history", 1).param("from", "2021-10-01T00:00:00Z"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(jsonPath("$[0].timestamp", is("2021-10-01T00:00:00Z")))
+                .andExpect(jsonPath("$[0].quantity", is(8)))
+                .andExpect(jsonPath("$[1].timestamp", is("2021-10-01T00:01:00Z")))
+                .andExpect(jsonPath("$[1].quantity", is(5)));
+    }
+
+    @Test
+    @DisplayName("Test stock history rollups - GET /products/1/stock-history?step=1h")
+    void testStockHistoryRollups() throws Exception {
+        var start = Instant.parse("2021-10-01T00:00:00Z");
+        var rollups = List.of(new StockRollup(start, 8, 9, 2, 5, 4));
+
+        doReturn(rollups).when(productService).findStockRollups(1, null, null, Duration.ofHours(1));
+
+        mockMvc.perform(get("/products/{id}/stock-history", 1).param("step", "1h"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].start", is("2021-10-01T00:00:00Z")))
+                .andExpect(jsonPath("$[0].open", is(8)))
+                .andExpect(jsonPath("$[0].high", is(9)))
+                .andExpect(jsonPath("$[0].low", is(2)))
+                .andExpect(jsonPath("$[0].close", is(5)))
+                .andExpect(jsonPath("$[0].changes", is(4)));
+    }
+
+    @Test
+    @DisplayName("Test stock history not found - GET /products/1/stock-history")
+    void testStockHistoryNotFound() throws Exception {
+        doReturn(null).when(productService).findStockHistory(1, null, null);
+
+        mockMvc.perform(get("/products/{id}/stock-history", 1))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Test stock history bad range - GET /products/1/stock-history?from=yesterday")
+    void testStockHistoryBadRange() throws Exception {
+        mockMvc.perform(get("/products/{id}/stock-history", 1).param("from", "yesterday"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/products/{id}/stock-history", 1).param("step", "hourly"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Test all product found - GET /products")
     void testAllProductsFound() throws Exception {
@@ -65,15 +130,79 @@ class ProductsControllerTest {
         products.add(product1);
         products.add(product2);
 
-        doReturn(products).when(productService).findAll();
+        doReturn(ProductCatalogSnapshot.of("k3x9", 3, products)).when(productService).findAllSnapshot();
 
         mockMvc.perform(get("/products"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON_VALUE))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"k3x9-3\""))
                 .andExpect(jsonPath("$[0].name", is("hamburger")))
                 .andExpect(jsonPath("$[1].name", is("gyoza")));
     }
 
+    @Test
+    @DisplayName("Test all products not modified - GET /products")
+    void testAllProductsNotModified() throws Exception {
+        var product = new Product(1, "hamburger", "yummy, but height calories", 2, 1);
+
+        doReturn(ProductCatalogSnapshot.of("k3x9", 3, List.of(product))).when(productService).findAllSnapshot();
+
+        mockMvc.perform(get("/products")
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"k3x9-3\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("Test all products with sparse fieldset - GET /products?fields=id,name,quantity")
+    void testAllProductsWithFields() throws Exception {
+        var product = new Product(1, "hamburger", "yummy, but height calories", 2, 1);
+
+        doReturn(ProductCatalogSnapshot.of("k3x9", 3, List.of(product))).when(productService).findAllSnapshot();
+
+        mockMvc.perform(get("/products").param("fields", "quantity,id,name"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"k3x9-3-id,name,quantity\""))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].name", is("hamburger")))
+                .andExpect(jsonPath("$[0].quantity", is(2)))
+                .andExpect(jsonPath("$[0].description").doesNotExist())
+                .andExpect(jsonPath("$[0].version").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Test product with sparse fieldset - GET /products/1?fields=name")
+    void testGetProductWithFields() throws Exception {
+        doReturn(new LinkedHashMap<>(Map.of("name", "hamburger", "version", 3)))
+                .when(productService).findFieldsById(1, Set.of("name", "version"));
+
+        mockMvc.perform(get("/products/{id}", 1).param("fields", "name"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.name", is("hamburger")))
+                .andExpect(jsonPath("$.description").doesNotExist())
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Test product with sparse fieldset including the version - GET /products/1?fields=id,version")
+    void testGetProductWithVersionField() throws Exception {
+        doReturn(new LinkedHashMap<>(Map.of("id", 1, "version", 3)))
+                .when(productService).findFieldsById(1, Set.of("id", "version"));
+
+        mockMvc.perform(get("/products/{id}", 1).param("fields", "id,version"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.version", is(3)));
+    }
+
+    @Test
+    @DisplayName("Test unknown field requested - GET /products?fields=price")
+    void testUnknownField() throws Exception {
+        mockMvc.perform(get("/products").param("fields", "price"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Test add a new product - POST /products")
     void testAddNewProduct() throws Exception {
@@ -96,14 +225,55 @@ class ProductsControllerTest {
                 .andExpect(jsonPath("$.version", is(1)));
     }
 
+    @Test
+    @DisplayName("Test retried product creation replayed - POST /products with Idempotency-Key")
+    void testAddNewProductWithIdempotencyKey() throws Exception {
+        var product = new Product("idempotent product", "idempotent product description", 5);
+        var mockProduct = new Product(1, "idempotent product", "idempotent product description", 5, 1);
+
+        doReturn(mockProduct).when(productService).save(ArgumentMatchers.any());
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/products")
+                            .contentType(MediaType.APPLICATION_JSON_VALUE)
+                            .header("Idempotency-Key", "create-idempotent-product")
+                            .content(new ObjectMapper().writeValueAsString(product)))
+                    .andExpect(status().isCreated())
+                    .andExpect(header().string(HttpHeaders.LOCATION, "/products/1"))
+                    .andExpect(jsonPath("$.id", is(1)));
+        }
+
+        verify(productService, times(1)).save(ArgumentMatchers.any());
+    }
+
+    @Test
+    @DisplayName("Test idempotency key reused for another product - POST /products")
+    void testIdempotencyKeyReused() throws Exception {
+        var mockProduct = new Product(1, "first product", "first product description", 5, 1);
+
+        doReturn(mockProduct).when(productService).save(ArgumentMatchers.any());
+
+        mockMvc.perform(post("/products")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .header("Idempotency-Key", "reused-key")
+                        .content(new ObjectMapper().writeValueAsString(new Product("first product", "first product description", 5))))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/products")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .header("Idempotency-Key", "reused-key")
+                        .content(new ObjectMapper().writeValueAsString(new Product("second product", "second product description", 5))))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
     @Test
     @DisplayName("Test update an existing product - PUT /products/1")
     void testUpdatingProduct() throws Exception {
         var product = new Product("new product", "new product description", 9);
         var mockProduct = new Product(1, "mock product", "mock product description", 4, 1);
+        var updatedProduct = new Product(1, "new product", "new product description", 9, 2);
 
         doReturn(mockProduct).when(productService).findById(1);
-        doReturn(mockProduct).when(productService).update(ArgumentMatchers.any());
+        doReturn(updatedProduct).when(productService).update(ArgumentMatchers.any(), ArgumentMatchers.eq(1));
 
         mockMvc.perform(put("/products/{id}", 1)
                         .contentType(MediaType.APPLICATION_JSON_VALUE)
@@ -154,14 +324,66 @@ class ProductsControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("Patch an existing product - PATCH /products/1")
+    void testPatchingProduct() throws Exception {
+        var patchedProduct = new Product(1, "mock product", "mock product description", 7, 2);
+
+        doReturn(patchedProduct).when(productService).patch(ArgumentMatchers.eq(1), ArgumentMatchers.eq(1), ArgumentMatchers.any());
+
+        mockMvc.perform(patch("/products/{id}", 1)
+                        .contentType("application/merge-patch+json")
+                        .header(HttpHeaders.IF_MATCH, 1)
+                        .content("{\"quantity\": 7}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(header().string(HttpHeaders.LOCATION, "/products/1"))
+                .andExpect(jsonPath("$.quantity", is(7)))
+                .andExpect(jsonPath("$.version", is(2)));
+    }
+
+    @Test
+    @DisplayName("Version mismatch while patching an existing product - PATCH /products/1")
+    void testVersionMismatchWhilePatching() throws Exception {
+        var existingProduct = new Product(1, "mock product", "mock product description", 4, 2);
+
+        doReturn(null).when(productService).patch(ArgumentMatchers.eq(1), ArgumentMatchers.eq(1), ArgumentMatchers.any());
+        doReturn(existingProduct).when(productService).findById(1);
+
+        mockMvc.perform(patch("/products/{id}", 1)
+                        .contentType("application/merge-patch+json")
+                        .header(HttpHeaders.IF_MATCH, 1)
+                        .content("{\"quantity\": 7}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("Product not found while patching - PATCH /products/1")
+    void testProductNotFoundWhilePatching() throws Exception {
+        doReturn(null).when(productService).findById(1);
+
+        mockMvc.perform(patch("/products/{id}", 1)
+                        .contentType("application/merge-patch+json")
+                        .header(HttpHeaders.IF_MATCH, 1)
+                        .content("{\"description\": null}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Reject patch of unknown fields - PATCH /products/1")
+    void testInvalidPatch() throws Exception {
+        mockMvc.perform(patch("/products/{id}", 1)
+                        .contentType("application/merge-patch+json")
+                        .header(HttpHeaders.IF_MATCH, 1)
+                        .content("{\"version\": 5}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Delete a product successfully - DELETE /products/1")
     public void testProductDeletedSuccessfully() throws Exception {
-        // Prepare mock product
-        var product = new Product(1, "New name", "New description", 20, 1);
-
         // Prepare mock service method
-        doReturn(product).when(productService).findById(1);
+        doReturn(true).when(productService).delete(1);
 
         // Perform DELETE request
         mockMvc.perform(delete("/products/{id}", 1))
@@ -172,10 +394,37 @@ class ProductsControllerTest {
     @DisplayName("Fail to delete an non-existing product - DELETE /products/1")
     public void testFailureToDeleteNonExistingProduct() throws Exception {
         // Prepare mock service method
-        doReturn(null).when(productService).findById(1);
+        doReturn(false).when(productService).delete(1);
 
         // Perform DELETE request
         mockMvc.perform(delete("/products/{id}", 1))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    @DisplayName("Delete products by ids - DELETE /products?ids=1,2")
+    public void testProductsDeletedByIds() throws Exception {
+        doReturn(2).when(productService).deleteAll(List.of(1, 2));
+
+        mockMvc.perform(delete("/products").param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", is(2)));
+    }
+
+    @Test
+    @DisplayName("Delete products by filter - DELETE /products?maxQuantity=0")
+    public void testProductsDeletedByFilter() throws Exception {
+        doReturn(3).when(productService).deleteByFilter(null, 0);
+
+        mockMvc.perform(delete("/products").param("maxQuantity", "0"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", is(3)));
+    }
+
+    @Test
+    @DisplayName("Refuse to delete all products without a filter - DELETE /products")
+    public void testDeleteProductsWithoutFilter() throws Exception {
+        mockMvc.perform(delete("/products"))
+                .andExpect(status().isBadRequest());
+    }
 }
\ No newline at end of file
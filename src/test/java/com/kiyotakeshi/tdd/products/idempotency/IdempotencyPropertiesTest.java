@@ -0,0 +1,52 @@
+package com.kiyotakeshi.tdd.products.idempotency;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PropertiesConfiguration.class);
+
+    @Test
+    @DisplayName("Bind valid idempotency settings")
+    void testValidSettings() {
+        contextRunner.withPropertyValues("products.idempotency.ttl=5m", "products.idempotency.wait-timeout=2s")
+                .run(context -> {
+                    var properties = context.getBean(IdempotencyProperties.class);
+                    assertEquals(Duration.ofMinutes(5), properties.getTtl());
+                    assertEquals(Duration.ofSeconds(2), properties.getWaitTimeout());
+                });
+    }
+
+    @Test
+    @DisplayName("Fail to start without room for a key")
+    void testZeroMaxKeys() {
+        contextRunner.withPropertyValues("products.idempotency.max-keys=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    @DisplayName("Fail to start with a zero or negative duration")
+    void testNonPositiveDurations() {
+        contextRunner.withPropertyValues("products.idempotency.ttl=0s")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+        contextRunner.withPropertyValues("products.idempotency.wait-timeout=-1s")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(IdempotencyProperties.class)
+    static class PropertiesConfiguration {
+    }
+}
@@ -0,0 +1,181 @@
+package com.kiyotakeshi.tdd.products.idempotency;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    private long now;
+
+    private IdempotencyProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        properties = new IdempotencyProperties();
+        properties.setTtl(Duration.ofMinutes(1));
+        properties.setMaxKeys(2);
+    }
+
+    @Test
+    @DisplayName("Replay the stored response for a retried key")
+    void testReplay() {
+        var store = new IdempotencyStore(properties, () -> now);
+        var writes = new AtomicInteger();
+
+        var first = store.execute("key", "payload", () -> ResponseEntity.status(HttpStatus.CREATED).body(writes.incrementAndGet()));
+        var retry = store.execute("key", "payload", () -> ResponseEntity.status(HttpStatus.CREATED).body(writes.incrementAndGet()));
+
+        assertEquals(1, writes.get());
+        assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        assertEquals(first.getBody(), retry.getBody());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.IDEMPOTENT_REPLAYED));
+    }
+
+    @Test
+    @DisplayName("Reject a key reused with another payload")
+    void testFingerprintMismatch() {
+        var store = new IdempotencyStore(properties, () -> now);
+
+        store.execute("key", "payload", () -> ResponseEntity.ok().build());
+        var response = store.execute("key", "other payload", () -> ResponseEntity.ok().build());
+
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("Run the write again once the key expired")
+    void testExpiry() {
+        var store = new IdempotencyStore(properties, () -> now);
+        var writes = new AtomicInteger();
+
+        store.execute("key", "payload", () -> ResponseEntity.ok(writes.incrementAndGet()));
+        now += TimeUnit.MINUTES.toNanos(2);
+        var response = store.execute("key", "payload", () -> ResponseEntity.ok(writes.incrementAndGet()));
+
+        assertEquals(2, writes.get());
+        assertNull(response.getHeaders().getFirst(IdempotencyStore.IDEMPOTENT_REPLAYED));
+    }
+
+    @Test
+    @DisplayName("Keep at most max-keys keys and do not keep failed responses")
+    void testBounded() {
+        var store = new IdempotencyStore(properties, () -> now);
+
+        store.execute("key1", "payload", () -> ResponseEntity.ok().build());
+        store.execute("key2", "payload", () -> ResponseEntity.ok().build());
+        store.execute("key3", "payload", () -> ResponseEntity.ok().build());
+        assertEquals(2, store.size());
+
+        store.execute("key4", "payload", () -> ResponseEntity.badRequest().build());
+        var retry = store.execute("key4", "payload", () -> ResponseEntity.ok().build());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertNull(retry.getHeaders().getFirst(IdempotencyStore.IDEMPOTENT_REPLAYED));
+    }
+
+    @Test
+    @DisplayName("Collapse concurrent duplicates into one write")
+    void testConcurrentDuplicates() throws Exception {
+        var store = new IdempotencyStore(properties, () -> now);
+        var writes = new AtomicInteger();
+        var writing = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<?>> first = executor.submit(() -> store.execute("key", "payload", () -> {
+                writing.countDown();
+                await(finish);
+                return ResponseEntity.ok(writes.incrementAndGet());
+            }));
+            writing.await();
+            Future<ResponseEntity<?>> duplicate = executor.submit(() -> store.execute("key", "payload",
+                    () -> ResponseEntity.ok(writes.incrementAndGet())));
+            finish.countDown();
+
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).getBody());
+            assertEquals(1, duplicate.get(5, TimeUnit.SECONDS).getBody());
+            assertEquals(1, writes.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Never evict a key whose write is still running")
+    void testInFlightKeyNotEvicted() throws Exception {
+        var store = new IdempotencyStore(properties, () -> now);
+        var writes = new AtomicInteger();
+        var writing = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<?>> first = executor.submit(() -> store.execute("key1", "payload", () -> {
+                writing.countDown();
+                await(finish);
+                return ResponseEntity.ok(writes.incrementAndGet());
+            }));
+            writing.await();
+            store.execute("key2", "payload", () -> ResponseEntity.ok().build());
+            store.execute("key3", "payload", () -> ResponseEntity.ok().build());
+            assertEquals(2, store.size());
+
+            Future<ResponseEntity<?>> duplicate = executor.submit(() -> store.execute("key1", "payload",
+                    () -> ResponseEntity.ok(writes.incrementAndGet())));
+            finish.countDown();
+
+            assertEquals(1, first.get(5, TimeUnit.SECONDS).getBody());
+            assertEquals(1, duplicate.get(5, TimeUnit.SECONDS).getBody());
+            assertEquals(1, writes.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Answer 409 to a duplicate once the first write ran for wait-timeout")
+    void testWaitTimeout() throws Exception {
+        properties.setWaitTimeout(Duration.ofMillis(50));
+        var store = new IdempotencyStore(properties, () -> now);
+        var writing = new CountDownLatch(1);
+        var finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> store.execute("key", "payload", () -> {
+                writing.countDown();
+                await(finish);
+                return ResponseEntity.ok().build();
+            }));
+            writing.await();
+
+            var duplicate = store.execute("key", "payload", () -> ResponseEntity.ok().build());
+
+            assertEquals(HttpStatus.CONFLICT, duplicate.getStatusCode());
+            assertEquals("1", duplicate.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        } finally {
+            finish.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
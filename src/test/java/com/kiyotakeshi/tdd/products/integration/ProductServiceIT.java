@@ -3,6 +3,7 @@ package com.kiyotakeshi.tdd.products.integration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.kiyotakeshi.tdd.products.entity.Product;
 import com.kiyotakeshi.tdd.products.repository.ProductRepository;
+import com.kiyotakeshi.tdd.products.service.ProductCatalog;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,6 +12,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.annotation.DirtiesContext;
@@ -39,17 +41,27 @@ public class ProductServiceIT {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
     private final File DATA_JSON = Paths.get("src", "test", "resources", "products.json").toFile();
 
     @BeforeEach
     void setUp() throws IOException {
         Product[] products = new ObjectMapper().readValue(DATA_JSON, Product[].class);
         Arrays.stream(products).forEach(productRepository::save);
+        // products were written directly to the repository
+        productCatalog.reload();
     }
 
     @AfterEach
     void tearDown() {
         productRepository.deleteAll();
+        // ids are expected to start from 1 in every test
+        jdbcTemplate.execute("ALTER TABLE product ALTER COLUMN id RESTART WITH 1");
     }
 
     @Test
@@ -61,9 +73,9 @@ public class ProductServiceIT {
                 .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(header().string(HttpHeaders.LOCATION, "/products/1"))
                 .andExpect(jsonPath("$.id", is(1)))
-                .andExpect(jsonPath("$.name", is("hamburger")))
-                .andExpect(jsonPath("$.description", is("yummy, but height calories")))
-                .andExpect(jsonPath("$.quantity", is(2)))
+                .andExpect(jsonPath("$.name", is("First Product")))
+                .andExpect(jsonPath("$.description", is("First Product Description")))
+                .andExpect(jsonPath("$.quantity", is(8)))
                 .andExpect(jsonPath("$.version", is(1)));
     }
 
@@ -0,0 +1,59 @@
+package com.kiyotakeshi.tdd.products.integration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.repository.ProductRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * The startup profile turns open-in-view off, so PUT sees detached products
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:startup-profile-update;DB_CLOSE_ON_EXIT=FALSE")
+@AutoConfigureMockMvc
+@ActiveProfiles("startup")
+class StartupProfileUpdateTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    @DisplayName("Reject a second PUT with the same If-Match under the startup profile")
+    void testVersionCheckedUpdate() throws Exception {
+        var product = productRepository.save(new Product(null, "first product", "first product description", 5, 1));
+        String body = new ObjectMapper().writeValueAsString(new Product("new product", "new product description", 9));
+
+        mockMvc.perform(put("/products/{id}", product.getId())
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .header(HttpHeaders.IF_MATCH, 1)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"2\""))
+                .andExpect(jsonPath("$.version", is(2)));
+        mockMvc.perform(put("/products/{id}", product.getId())
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .header(HttpHeaders.IF_MATCH, 1)
+                        .content(body))
+                .andExpect(status().isConflict());
+
+        assertEquals(2, productRepository.findProductById(product.getId()).getVersion());
+    }
+}
@@ -0,0 +1,205 @@
+package com.kiyotakeshi.tdd.products.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Open-model load generator: requests are started on a fixed schedule regardless of how fast
+ * earlier requests complete, so a slow server builds up a queue instead of slowing the client down.
+ * Latency is measured from the scheduled start time rather than the actual send time,
+ * which keeps the histograms free of coordinated omission when the client itself falls behind.
+ * <p>
+ * Operations are picked by weight from a seeded {@link Random}, so two runs with the same seed
+ * issue the same sequence of requests.
+ */
+class ConstantArrivalRateLoad {
+
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final HttpClient client;
+
+    private final List<Operation> operations;
+
+    private final int totalWeight;
+
+    private final int maxInFlight;
+
+    ConstantArrivalRateLoad(HttpClient client, List<Operation> operations, int maxInFlight) {
+        this.client = client;
+        this.operations = operations;
+        this.totalWeight = operations.stream().mapToInt(Operation::getWeight).sum();
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Issues {@code ratePerSecond} requests per second for {@code seconds} seconds and waits for the stragglers.
+     */
+    Result run(int ratePerSecond, int seconds, long seed) throws InterruptedException {
+        Map<String, OperationResult> results = new LinkedHashMap<>();
+        operations.forEach(operation -> results.put(operation.getName(), new OperationResult()));
+
+        Random random = new Random(seed);
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long requests = (long) ratePerSecond * seconds;
+        long start = System.nanoTime();
+
+        for (long i = 0; i < requests; i++) {
+            long scheduled = start + i * intervalNanos;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Operation operation = pick(random);
+            OperationResult result = results.get(operation.getName());
+            HttpRequest request = operation.getRequest().apply(random);
+            if (!inFlight.tryAcquire()) {
+                // the server is so far behind that the client would need unbounded concurrency
+                result.dropped.incrementAndGet();
+                continue;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, throwable) -> {
+                        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled);
+                        result.latency.recordValue(Math.min(latencyMicros, HIGHEST_TRACKABLE_MICROS));
+                        if (throwable != null || response.statusCode() >= 400) {
+                            result.errors.incrementAndGet();
+                        }
+                        inFlight.release();
+                    });
+        }
+
+        inFlight.acquire(maxInFlight);
+        long elapsedNanos = System.nanoTime() - start;
+        return new Result(results, elapsedNanos);
+    }
+
+    private Operation pick(Random random) {
+        int ticket = random.nextInt(totalWeight);
+        for (Operation operation : operations) {
+            ticket -= operation.getWeight();
+            if (ticket < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException("weights do not add up");
+    }
+
+    static class Operation {
+
+        private final String name;
+
+        private final int weight;
+
+        private final Function<Random, HttpRequest> request;
+
+        Operation(String name, int weight, Function<Random, HttpRequest> request) {
+            this.name = name;
+            this.weight = weight;
+            this.request = request;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getWeight() {
+            return weight;
+        }
+
+        Function<Random, HttpRequest> getRequest() {
+            return request;
+        }
+    }
+
+    static class OperationResult {
+
+        private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicLong dropped = new AtomicLong();
+
+        Histogram getLatency() {
+            return latency;
+        }
+
+        long getErrors() {
+            return errors.get();
+        }
+
+        long getDropped() {
+            return dropped.get();
+        }
+
+        double getP99Millis() {
+            return latency.getValueAtPercentile(99.0) / 1000.0;
+        }
+    }
+
+    static class Result {
+
+        private final Map<String, OperationResult> operations;
+
+        private final long elapsedNanos;
+
+        Result(Map<String, OperationResult> operations, long elapsedNanos) {
+            this.operations = operations;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        OperationResult get(String operation) {
+            return operations.get(operation);
+        }
+
+        /**
+         * Successfully completed requests per second over the whole run.
+         */
+        double getThroughput() {
+            long completed = operations.values().stream()
+                    .mapToLong(result -> result.latency.getTotalCount() - result.getErrors())
+                    .sum();
+            return completed / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * Prints a summary and writes one HdrHistogram percentile distribution (in milliseconds) per operation
+         * to {@code directory}, in the {@code .hgrm} format the HdrHistogram plotter reads.
+         */
+        void report(PrintStream out, Path directory) throws IOException {
+            Files.createDirectories(directory);
+            out.printf("%-8s %10s %8s %8s %10s %10s %10s %10s%n",
+                    "op", "count", "errors", "dropped", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+            for (Map.Entry<String, OperationResult> entry : operations.entrySet()) {
+                OperationResult result = entry.getValue();
+                Histogram latency = result.latency;
+                out.printf("%-8s %10d %8d %8d %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(),
+                        latency.getTotalCount(), result.getErrors(), result.getDropped(),
+                        latency.getValueAtPercentile(50.0) / 1000.0, result.getP99Millis(),
+                        latency.getValueAtPercentile(99.9) / 1000.0, latency.getMaxValue() / 1000.0);
+                try (PrintStream file = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")))) {
+                    latency.outputPercentileDistribution(file, 1000.0);
+                }
+            }
+            out.printf("throughput %.1f req/s%n", getThroughput());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.kiyotakeshi.tdd.products.loadtest;
+
+import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.loadtest.ConstantArrivalRateLoad.Operation;
+import com.kiyotakeshi.tdd.products.repository.ProductRepository;
+import com.kiyotakeshi.tdd.products.service.ProductCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test against the application on a random port with an embedded H2 database.
+ * Seeds {@code load-test.products} generated products and drives a mixed workload of product reads,
+ * full list reads and creates at a constant arrival rate, then checks p99 latency and throughput
+ * against the configured thresholds.
+ * <p>
+ * Run with {@code ./mvnw -Pload-test verify}, the thresholds and sizing are properties of that profile
+ * and can be overridden with {@code -Dload-test.*}. Percentile distributions are written to
+ * {@code target/load-test}. The defaults and their baseline are documented on the Maven profile.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:load-test",
+        "products.rate-limit.enabled=false",
+        "logging.level.root=WARN"})
+class ProductsLoadIT {
+
+    private static final int PRODUCTS = Integer.getInteger("load-test.products", 5_000);
+    private static final int RATE = Integer.getInteger("load-test.rate", 50);
+    private static final int WARMUP_SECONDS = Integer.getInteger("load-test.warmup-seconds", 10);
+    private static final int SECONDS = Integer.getInteger("load-test.seconds", 30);
+    private static final int MAX_IN_FLIGHT = Integer.getInteger("load-test.max-in-flight", 64);
+    private static final long SEED = Long.getLong("load-test.seed", 42L);
+
+    private static final double READ_P99_MILLIS = threshold("load-test.read.p99-ms", 40);
+    private static final double LIST_P99_MILLIS = threshold("load-test.list.p99-ms", 80);
+    private static final double WRITE_P99_MILLIS = threshold("load-test.write.p99-ms", 60);
+    private static final double MIN_THROUGHPUT = threshold("load-test.min-throughput", RATE * 0.95);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    private final List<Integer> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            products.add(new Product("Product " + i, "Product " + i + " Description", i % 100));
+        }
+        productRepository.saveAll(products).forEach(product -> ids.add(product.getId()));
+        productCatalog.reload();
+    }
+
+    @Test
+    @DisplayName("Mixed read/list/write workload stays within the latency and throughput thresholds")
+    void testMixedWorkload() throws Exception {
+        var client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        var load = new ConstantArrivalRateLoad(client, List.of(
+                new Operation("read", 80, this::readProduct),
+                new Operation("list", 5, random -> get("/products")),
+                new Operation("write", 15, this::createProduct)),
+                MAX_IN_FLIGHT);
+
+        // warmup, the results are discarded
+        load.run(RATE, WARMUP_SECONDS, SEED);
+        var result = load.run(RATE, SECONDS, SEED);
+        result.report(System.out, Paths.get("target", "load-test"));
+
+        for (String operation : List.of("read", "list", "write")) {
+            assertEquals(0, result.get(operation).getErrors(), operation + " errors");
+            assertEquals(0, result.get(operation).getDropped(), operation + " requests dropped");
+        }
+        assertAll(
+                () -> assertTrue(result.get("read").getP99Millis() <= READ_P99_MILLIS,
+                        "read p99 " + result.get("read").getP99Millis() + " ms > " + READ_P99_MILLIS + " ms"),
+                () -> assertTrue(result.get("list").getP99Millis() <= LIST_P99_MILLIS,
+                        "list p99 " + result.get("list").getP99Millis() + " ms > " + LIST_P99_MILLIS + " ms"),
+                () -> assertTrue(result.get("write").getP99Millis() <= WRITE_P99_MILLIS,
+                        "write p99 " + result.get("write").getP99Millis() + " ms > " + WRITE_P99_MILLIS + " ms"),
+                () -> assertTrue(result.getThroughput() >= MIN_THROUGHPUT,
+                        "throughput " + result.getThroughput() + " req/s < " + MIN_THROUGHPUT + " req/s"));
+    }
+
+    private HttpRequest readProduct(Random random) {
+        return get("/products/" + ids.get(random.nextInt(ids.size())));
+    }
+
+    private HttpRequest createProduct(Random random) {
+        int n = random.nextInt(PRODUCTS);
+        String body = "{\"name\":\"Load Product " + n + "\",\"description\":\"Load Product " + n
+                + " Description\",\"quantity\":" + random.nextInt(100) + "}";
+        return HttpRequest.newBuilder(uri("/products"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(uri(path)).GET().build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private static double threshold(String property, double defaultValue) {
+        String value = System.getProperty(property);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,102 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import com.kiyotakeshi.tdd.products.entity.OutboxEvent;
+import com.kiyotakeshi.tdd.products.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OutboxDispatcherTest {
+
+    private static final Instant NOW = Instant.parse("2021-10-01T00:00:10Z");
+
+    private OutboxEventRepository outboxEventRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Publish pending events in batches and delete them")
+    void testDrainInBatches() {
+        var sink = new InMemoryOutboxSink(10);
+        var dispatcher = dispatcher(sink);
+
+        doReturn(List.of(event(1L), event(2L)), List.of(event(3L)))
+                .when(outboxEventRepository).findByOrderByIdAsc(any());
+
+        assertEquals(3, dispatcher.drain());
+
+        assertEquals(3, sink.getEvents().size());
+        verify(outboxEventRepository).deleteEventsByIdIn(List.of(1L, 2L));
+        verify(outboxEventRepository).deleteEventsByIdIn(List.of(3L));
+        assertEquals(3, meterRegistry.counter("outbox.events.published").count());
+        assertEquals(2, meterRegistry.timer("outbox.batch.publish").count());
+        assertEquals(0, dispatcher.getLagMillis());
+    }
+
+    @Test
+    @DisplayName("Keep events and report lag when a sink fails")
+    void testSinkFailure() {
+        var dispatcher = dispatcher(events -> {
+            throw new IllegalStateException("sink down");
+        });
+
+        doReturn(List.of(event(1L))).when(outboxEventRepository).findByOrderByIdAsc(any());
+
+        assertEquals(0, dispatcher.drain());
+
+        verify(outboxEventRepository, never()).deleteEventsByIdIn(any());
+        assertEquals(1, meterRegistry.counter("outbox.publish.failures").count());
+        assertEquals(10_000, dispatcher.getLagMillis());
+        assertEquals(10, meterRegistry.get("outbox.lag").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Leave the table alone once stopped")
+    void testStopped() {
+        var sink = new InMemoryOutboxSink(10);
+        var dispatcher = dispatcher(sink);
+
+        doReturn(List.of(event(1L))).when(outboxEventRepository).findByOrderByIdAsc(any());
+        dispatcher.stop();
+
+        assertFalse(dispatcher.isRunning());
+        assertEquals(0, dispatcher.drain());
+        verifyNoInteractions(outboxEventRepository);
+    }
+
+    @Test
+    @DisplayName("Refuse to drain without a sink")
+    void testNoSink() {
+        assertThrows(IllegalArgumentException.class, () -> new OutboxDispatcher(outboxEventRepository, List.of(), 2,
+                meterRegistry, Clock.fixed(NOW, ZoneOffset.UTC)));
+    }
+
+    private OutboxDispatcher dispatcher(OutboxSink sink) {
+        var dispatcher = new OutboxDispatcher(outboxEventRepository, List.of(sink), 2, meterRegistry,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    private static OutboxEvent event(Long id) {
+        var event = new OutboxEvent(Outbox.PRODUCT_CREATED, id.intValue(), "{}", Instant.parse("2021-10-01T00:00:00Z"));
+        event.setId(id);
+        return event;
+    }
+}
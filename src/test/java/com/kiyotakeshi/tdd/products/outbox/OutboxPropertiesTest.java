@@ -0,0 +1,46 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PropertiesConfiguration.class);
+
+    @Test
+    @DisplayName("Bind valid outbox settings")
+    void testValidSettings() {
+        contextRunner.withPropertyValues("products.outbox.batch-size=20")
+                .run(context -> assertEquals(20, context.getBean(OutboxProperties.class).getBatchSize()));
+    }
+
+    @Test
+    @DisplayName("Fail to start with an empty batch")
+    void testZeroBatchSize() {
+        contextRunner.withPropertyValues("products.outbox.batch-size=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    @DisplayName("Bind the built-in sinks and fail to start with an unknown one")
+    void testSink() {
+        contextRunner.withPropertyValues("products.outbox.sink=file")
+                .run(context -> assertEquals(OutboxProperties.Sink.FILE, context.getBean(OutboxProperties.class).getSink()));
+        contextRunner.withPropertyValues("products.outbox.sink=kafka")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(OutboxProperties.class)
+    static class PropertiesConfiguration {
+    }
+}
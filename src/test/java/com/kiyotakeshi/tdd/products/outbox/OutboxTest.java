@@ -0,0 +1,92 @@
+package com.kiyotakeshi.tdd.products.outbox;
+
+import com.kiyotakeshi.tdd.products.entity.OutboxEvent;
+import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.repository.OutboxEventRepository;
+import com.kiyotakeshi.tdd.products.repository.ProductRepository;
+import com.kiyotakeshi.tdd.products.service.ProductService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "products.outbox.dispatcher-enabled=false")
+class OutboxTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        productRepository.deleteAll();
+        outboxEventRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Record an event in the same transaction as the product write")
+    void testEventRecorded() {
+        var product = productService.save(new Product("outbox product", "outbox product description", 3));
+        productService.delete(product.getId());
+
+        List<OutboxEvent> events = new ArrayList<>();
+        outboxEventRepository.findAll().forEach(events::add);
+
+        assertEquals(2, events.size());
+        assertEquals(Outbox.PRODUCT_CREATED, events.get(0).getType());
+        assertEquals(product.getId(), events.get(0).getProductId());
+        assertTrue(events.get(0).getPayload().contains("\"name\":\"outbox product\""));
+        assertEquals(Outbox.PRODUCT_DELETED, events.get(1).getType());
+    }
+
+    @Test
+    @DisplayName("List the ids of the products removed by a bulk delete")
+    void testBulkDeleteEventIds() {
+        var small = productService.save(new Product("small product", "small product description", 3));
+        var large = productService.save(new Product("large product", "large product description", 30));
+        var other = productService.save(new Product("other product", "other product description", 3));
+
+        assertEquals(1, productService.deleteByFilter("small product", 5));
+        assertEquals(1, productService.deleteAll(List.of(large.getId(), small.getId())));
+
+        List<OutboxEvent> events = new ArrayList<>();
+        outboxEventRepository.findAll().forEach(events::add);
+
+        assertEquals(5, events.size());
+        assertEquals(Outbox.PRODUCTS_DELETED, events.get(3).getType());
+        assertTrue(events.get(3).getPayload().contains("\"ids\":[" + small.getId() + "]"));
+        assertEquals(Outbox.PRODUCTS_DELETED, events.get(4).getType());
+        assertTrue(events.get(4).getPayload().contains("\"ids\":[" + large.getId() + "]"));
+        assertEquals(List.of(other.getId()), productRepository.findProductIdsByFilter(null, null));
+    }
+
+    @Test
+    @DisplayName("Roll back the event with the product write")
+    void testEventRolledBack() {
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            productService.save(new Product("outbox product", "outbox product description", 3));
+            throw new IllegalStateException("rollback");
+        }));
+
+        assertEquals(0, outboxEventRepository.count());
+        assertEquals(0, productRepository.count());
+    }
+}
@@ -0,0 +1,91 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitFilterTest {
+
+    @Test
+    @DisplayName("Answer 429 with Retry-After once the client is over its limit")
+    void testTooManyRequests() throws Exception {
+        var properties = new RateLimitProperties();
+        properties.setWrite(new RateLimitProperties.Limit(1, 0.5));
+        var filter = new RateLimitFilter(new RateLimiter(properties), properties.getClientHeader());
+
+        var first = perform(filter, "POST", "/products", "10.0.0.1");
+        var second = perform(filter, "POST", "/products", "10.0.0.1");
+        var otherClient = perform(filter, "POST", "/products", "10.0.0.2");
+
+        assertEquals(200, first.getStatus());
+        assertEquals(429, second.getStatus());
+        assertEquals("2", second.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(200, otherClient.getStatus());
+    }
+
+    @Test
+    @DisplayName("Answer 503 with Retry-After when too many list requests are in flight")
+    void testServiceUnavailable() throws Exception {
+        var properties = new RateLimitProperties();
+        properties.setListMaxConcurrent(0);
+        var filter = new RateLimitFilter(new RateLimiter(properties), properties.getClientHeader());
+
+        var response = perform(filter, "GET", "/products", "10.0.0.1");
+
+        assertEquals(503, response.getStatus());
+        assertEquals("1", response.getHeader(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    @DisplayName("Ignore the client header unless one is configured")
+    void testClientHeaderNotTrustedByDefault() throws Exception {
+        var properties = new RateLimitProperties();
+        properties.setWrite(new RateLimitProperties.Limit(1, 0.5));
+        var filter = new RateLimitFilter(new RateLimiter(properties), properties.getClientHeader());
+
+        var first = perform(filter, "POST", "/products", "10.0.0.1", "X-Client-Id", "a");
+        var second = perform(filter, "POST", "/products", "10.0.0.1", "X-Client-Id", "b");
+
+        assertEquals(200, first.getStatus());
+        assertEquals(429, second.getStatus());
+    }
+
+    @Test
+    @DisplayName("Key clients by the configured header")
+    void testConfiguredClientHeader() throws Exception {
+        var properties = new RateLimitProperties();
+        properties.setWrite(new RateLimitProperties.Limit(1, 0.5));
+        properties.setClientHeader("X-Client-Id");
+        var filter = new RateLimitFilter(new RateLimiter(properties), properties.getClientHeader());
+
+        var first = perform(filter, "POST", "/products", "10.0.0.1", "X-Client-Id", "a");
+        var second = perform(filter, "POST", "/products", "10.0.0.1", "X-Client-Id", "b");
+        var third = perform(filter, "POST", "/products", "10.0.0.1", "X-Client-Id", "a");
+
+        assertEquals(200, first.getStatus());
+        assertEquals(200, second.getStatus());
+        assertEquals(429, third.getStatus());
+    }
+
+    private MockHttpServletResponse perform(RateLimitFilter filter, String method, String uri, String remoteAddr)
+            throws Exception {
+        return perform(filter, method, uri, remoteAddr, null, null);
+    }
+
+    private MockHttpServletResponse perform(RateLimitFilter filter, String method, String uri, String remoteAddr,
+                                            String header, String value) throws Exception {
+        var request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(remoteAddr);
+        if (header != null) {
+            request.addHeader(header, value);
+        }
+        var response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
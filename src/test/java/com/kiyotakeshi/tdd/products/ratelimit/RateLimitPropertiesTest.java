@@ -0,0 +1,53 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimitPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PropertiesConfiguration.class);
+
+    @Test
+    @DisplayName("Bind valid rate limit settings")
+    void testValidSettings() {
+        contextRunner.withPropertyValues("products.rate-limit.read.capacity=5",
+                        "products.rate-limit.read.refill-per-second=0.5")
+                .run(context -> {
+                    var read = context.getBean(RateLimitProperties.class).getRead();
+                    assertEquals(5, read.getCapacity());
+                    assertEquals(0.5, read.getRefillPerSecond());
+                });
+    }
+
+    @Test
+    @DisplayName("Fail to start without client buckets or concurrent list requests")
+    void testZeroLimits() {
+        contextRunner.withPropertyValues("products.rate-limit.max-clients=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+        contextRunner.withPropertyValues("products.rate-limit.list-max-concurrent=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Test
+    @DisplayName("Fail to start with an empty or never refilled bucket")
+    void testOutOfRangeBucket() {
+        contextRunner.withPropertyValues("products.rate-limit.write.capacity=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+        contextRunner.withPropertyValues("products.rate-limit.list.refill-per-second=-1")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(RateLimitProperties.class)
+    static class PropertiesConfiguration {
+    }
+}
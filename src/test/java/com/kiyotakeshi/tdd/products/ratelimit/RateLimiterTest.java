@@ -0,0 +1,103 @@
+package com.kiyotakeshi.tdd.products.ratelimit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private long now;
+
+    private RateLimitProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        now = 0;
+        properties = new RateLimitProperties();
+        properties.setList(new RateLimitProperties.Limit(2, 1));
+        properties.setRead(new RateLimitProperties.Limit(3, 1));
+        properties.setListMaxConcurrent(1);
+    }
+
+    @Test
+    @DisplayName("Reject requests over the bucket capacity until tokens are refilled")
+    void testRateLimited() {
+        var rateLimiter = new RateLimiter(properties, () -> now);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.acquire("client", EndpointClass.READ).isAllowed());
+        }
+        var decision = rateLimiter.acquire("client", EndpointClass.READ);
+        assertEquals(RateLimitDecision.Outcome.RATE_LIMITED, decision.getOutcome());
+        assertEquals(1, decision.getRetryAfterSeconds());
+
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertTrue(rateLimiter.acquire("client", EndpointClass.READ).isAllowed());
+    }
+
+    @Test
+    @DisplayName("Keep separate buckets per client and endpoint class")
+    void testSeparateBuckets() {
+        var rateLimiter = new RateLimiter(properties, () -> now);
+
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.acquire("client", EndpointClass.READ);
+        }
+
+        assertFalse(rateLimiter.acquire("client", EndpointClass.READ).isAllowed());
+        assertTrue(rateLimiter.acquire("other", EndpointClass.READ).isAllowed());
+        assertTrue(rateLimiter.acquire("client", EndpointClass.WRITE).isAllowed());
+    }
+
+    @Test
+    @DisplayName("Shed list requests over the concurrency limit")
+    void testOverloaded() {
+        var rateLimiter = new RateLimiter(properties, () -> now);
+
+        var first = rateLimiter.acquire("client", EndpointClass.LIST);
+        assertTrue(first.holdsPermit());
+
+        var second = rateLimiter.acquire("other", EndpointClass.LIST);
+        assertEquals(RateLimitDecision.Outcome.OVERLOADED, second.getOutcome());
+
+        rateLimiter.release(first);
+        assertTrue(rateLimiter.acquire("other", EndpointClass.LIST).isAllowed());
+    }
+
+    @Test
+    @DisplayName("Drop the least recently used bucket when too many clients are tracked")
+    void testLeastRecentlyUsedBucketEvicted() {
+        properties.setMaxClients(2);
+        var rateLimiter = new RateLimiter(properties, () -> now);
+
+        rateLimiter.acquire("client1", EndpointClass.READ);
+        rateLimiter.acquire("client2", EndpointClass.READ);
+        now += TimeUnit.SECONDS.toNanos(10);
+        rateLimiter.acquire("client3", EndpointClass.READ);
+
+        assertEquals(2, rateLimiter.trackedBuckets());
+    }
+
+    @Test
+    @DisplayName("Stay within max clients when no bucket is full")
+    void testBucketsBoundedWithoutFullBuckets() {
+        properties.setMaxClients(2);
+        var rateLimiter = new RateLimiter(properties, () -> now);
+
+        // every client drains its bucket, so none of them would count as idle
+        for (int client = 0; client < 100; client++) {
+            for (int i = 0; i < 3; i++) {
+                rateLimiter.acquire("client" + client, EndpointClass.READ);
+            }
+            assertTrue(rateLimiter.trackedBuckets() <= 2);
+        }
+
+        // the most recently used clients keep their drained buckets
+        assertFalse(rateLimiter.acquire("client99", EndpointClass.READ).isAllowed());
+        assertFalse(rateLimiter.acquire("client98", EndpointClass.READ).isAllowed());
+    }
+}
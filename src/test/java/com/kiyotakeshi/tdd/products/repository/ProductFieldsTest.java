@@ -0,0 +1,30 @@
+package com.kiyotakeshi.tdd.products.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductFieldsTest {
+
+    @Test
+    @DisplayName("Parse fields into Product declaration order")
+    void testParse() {
+        assertEquals(List.of("id", "name", "quantity"), List.copyOf(ProductFields.parse("quantity, name,id,name")));
+    }
+
+    @Test
+    @DisplayName("Parse a missing parameter as all fields")
+    void testParseEmpty() {
+        assertTrue(ProductFields.parse(null).isEmpty());
+        assertTrue(ProductFields.parse(" ").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Reject unknown fields")
+    void testUnknownField() {
+        assertThrows(IllegalArgumentException.class, () -> ProductFields.parse("id,price"));
+    }
+}
@@ -0,0 +1,41 @@
+package com.kiyotakeshi.tdd.products.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductPatchTest {
+
+    @Test
+    @DisplayName("Keep changed fields and explicit nulls")
+    void testChangedFields() {
+        var document = new HashMap<String, Object>();
+        document.put("quantity", 3);
+        document.put("description", null);
+
+        var patch = ProductPatch.fromMergePatch(document);
+
+        assertEquals(2, patch.getChanges().size());
+        assertEquals(3, patch.getChanges().get("quantity"));
+        assertTrue(patch.getChanges().containsKey("description"));
+        assertNull(patch.getChanges().get("description"));
+    }
+
+    @Test
+    @DisplayName("Reject fields that cannot be patched")
+    void testUnknownField() {
+        assertThrows(IllegalArgumentException.class, () -> ProductPatch.fromMergePatch(Map.of("id", 2)));
+        assertThrows(IllegalArgumentException.class, () -> ProductPatch.fromMergePatch(Map.of("version", 2)));
+    }
+
+    @Test
+    @DisplayName("Reject values of the wrong type")
+    void testWrongType() {
+        assertThrows(IllegalArgumentException.class, () -> ProductPatch.fromMergePatch(Map.of("quantity", "many")));
+        assertThrows(IllegalArgumentException.class, () -> ProductPatch.fromMergePatch(Map.of("name", 1)));
+    }
+}
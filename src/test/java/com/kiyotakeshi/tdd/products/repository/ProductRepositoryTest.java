@@ -7,12 +7,14 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.jdbc.DataJdbcTest;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,6 +25,9 @@ class ProductRepositoryTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private static File DATA_JSON = Paths.get("src", "test", "resources", "products.json").toFile();
 
     @BeforeEach
@@ -34,6 +39,8 @@ class ProductRepositoryTest {
     @AfterEach
     void tearDown() {
         productRepository.deleteAll();
+        // ids are expected to start from 1 in every test
+        jdbcTemplate.execute("ALTER TABLE product ALTER COLUMN id RESTART WITH 1");
     }
 
     @Test
@@ -98,4 +105,78 @@ class ProductRepositoryTest {
         // Then
         assertEquals(1L, productRepository.count());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Test product deleted by id with a single statement")
+    public void testProductDeletedById() {
+        // Given two products in the database
+        var id = productRepository.findAll().iterator().next().getId();
+
+        // When
+        var deleted = productRepository.deleteProductById(id);
+
+        // Then
+        assertEquals(1, deleted);
+        assertEquals(0, productRepository.deleteProductById(id));
+        assertEquals(1L, productRepository.count());
+    }
+
+    @Test
+    @DisplayName("Test product ids found by filter")
+    public void testProductIdsFoundByFilter() {
+        // Given two products in the database with quantities 8 and 10
+
+        // When
+        var ids = productRepository.findProductIdsByFilter(null, 9);
+
+        // Then
+        assertEquals(1, ids.size());
+        assertEquals("First Product", productRepository.findProductById(ids.get(0)).getName());
+        assertEquals(2, productRepository.findProductIdsByFilter(null, null).size());
+        assertEquals(0, productRepository.findProductIdsByFilter("Second Product", 9).size());
+    }
+
+    @Test
+    @DisplayName("Test product patched with matching version")
+    public void testProductPatched() {
+        // Given two products in the database
+        var patch = ProductPatch.fromMergePatch(Map.of("quantity", 3));
+
+        // When
+        var updated = productRepository.patch(1, 1, patch);
+
+        // Then
+        var product = productRepository.findProductById(1);
+        assertEquals(1, updated);
+        assertEquals(3, product.getQuantity());
+        assertEquals("First Product Description", product.getDescription());
+        assertEquals(2, product.getVersion());
+    }
+
+    @Test
+    @DisplayName("Test product not patched with another version")
+    public void testProductNotPatchedWithOtherVersion() {
+        // Given two products in the database
+        var patch = ProductPatch.fromMergePatch(Map.of("quantity", 3));
+
+        // When
+        var updated = productRepository.patch(1, 2, patch);
+
+        // Then
+        assertEquals(0, updated);
+        assertEquals(8, productRepository.findProductById(1).getQuantity());
+    }
+
+    @Test
+    @DisplayName("Test only requested product fields retrieved")
+    public void testProductFieldsRetrieved() {
+        // Given two products in the database
+
+        // When
+        var fields = productRepository.findFieldsById(1, ProductFields.parse("name,quantity"));
+
+        // Then
+        assertEquals(Map.of("name", "First Product", "quantity", 8), fields.orElseThrow());
+        assertTrue(productRepository.findFieldsById(100, ProductFields.parse("name")).isEmpty());
+    }
+}
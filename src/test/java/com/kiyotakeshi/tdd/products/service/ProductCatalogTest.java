@@ -0,0 +1,111 @@
+package com.kiyotakeshi.tdd.products.service;
+
+import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductCatalogTest {
+
+    private ProductRepository productRepository;
+
+    private ProductCatalog productCatalog;
+
+    @BeforeEach
+    void setUp() {
+        productRepository = mock(ProductRepository.class);
+        productCatalog = new ProductCatalog(productRepository);
+
+        var product1 = new Product(1, "mock product1", "mock product description1", 5, 1);
+        var product3 = new Product(3, "mock product3", "mock product description3", 7, 1);
+        doReturn(Arrays.asList(product3, product1)).when(productRepository).findAll();
+    }
+
+    @Test
+    @DisplayName("Load snapshot once and sort products by id")
+    void testSnapshotLoadedOnce() {
+        var snapshot = productCatalog.snapshot();
+
+        assertEquals(1, snapshot.getVersion());
+        assertEquals(1, snapshot.getProducts().get(0).getId());
+        assertEquals(3, snapshot.getProducts().get(1).getId());
+        assertSame(snapshot, productCatalog.snapshot());
+        verify(productRepository, times(1)).findAll();
+    }
+
+    @Test
+    @DisplayName("Give the same version a different ETag in another catalog instance")
+    void testETagUniqueAcrossInstances() {
+        var snapshot = productCatalog.snapshot();
+        var restarted = new ProductCatalog(productRepository).snapshot();
+
+        assertEquals(snapshot.getVersion(), restarted.getVersion());
+        assertNotEquals(snapshot.getETag(), restarted.getETag());
+        assertTrue(snapshot.getETag().endsWith("-1"));
+    }
+
+    @Test
+    @DisplayName("Publish a new snapshot on insert, update and delete")
+    void testIncrementalChanges() {
+        var initial = productCatalog.snapshot();
+
+        productCatalog.put(new Product(2, "mock product2", "mock product description2", 6, 1));
+        productCatalog.put(new Product(1, "updated product1", "mock product description1", 9, 2));
+        productCatalog.remove(3);
+
+        var snapshot = productCatalog.snapshot();
+        assertEquals(4, snapshot.getVersion());
+        assertEquals(2, snapshot.size());
+        assertEquals("updated product1", snapshot.getProducts().get(0).getName());
+        assertEquals("mock product2", snapshot.getProducts().get(1).getName());
+
+        // earlier snapshots are never modified
+        assertEquals(1, initial.getVersion());
+        assertEquals(2, initial.size());
+        assertEquals("mock product1", initial.getProducts().get(0).getName());
+    }
+
+    @Test
+    @DisplayName("Pick up writes of other instances on refresh, keeping the version if nothing changed")
+    void testRefresh() {
+        productCatalog.refresh();
+        verify(productRepository, never()).findAll();
+
+        var initial = productCatalog.snapshot();
+        productCatalog.refresh();
+        assertSame(initial, productCatalog.snapshot());
+
+        var updated = new Product(1, "updated product1", "mock product description1", 9, 2);
+        doReturn(Arrays.asList(updated)).when(productRepository).findAll();
+        productCatalog.refresh();
+
+        var snapshot = productCatalog.snapshot();
+        assertEquals(2, snapshot.getVersion());
+        assertEquals(1, snapshot.size());
+        assertEquals("updated product1", snapshot.getProducts().get(0).getName());
+    }
+
+    @Test
+    @DisplayName("Ignore stale product versions")
+    void testStaleVersionIgnored() {
+        productCatalog.snapshot();
+        productCatalog.put(new Product(1, "updated product1", "mock product description1", 9, 3));
+        productCatalog.put(new Product(1, "stale product1", "mock product description1", 9, 2));
+
+        assertEquals("updated product1", productCatalog.snapshot().getProducts().get(0).getName());
+    }
+
+    @Test
+    @DisplayName("Skip changes until the snapshot is loaded")
+    void testChangesBeforeLoadIgnored() {
+        productCatalog.remove(1);
+
+        assertEquals(2, productCatalog.snapshot().size());
+    }
+}
@@ -1,6 +1,7 @@
 package com.kiyotakeshi.tdd.products.service;
 
 import com.kiyotakeshi.tdd.products.entity.Product;
+import com.kiyotakeshi.tdd.products.repository.ProductPatch;
 import com.kiyotakeshi.tdd.products.repository.ProductRepository;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,10 +13,13 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -84,10 +88,21 @@ class ProductServiceTest {
         doReturn(product).when(productRepository).findProductById(1);
         doReturn(updatedProduct).when(productRepository).save(product);
 
-        Product updateProduct = productService.update(product);
+        Product updateProduct = productService.update(product, 1);
 
         assertEquals("updated product",updatedProduct.getName());
         assertEquals(2,updatedProduct.getVersion());
+        assertEquals(2, product.getVersion(), "version should be bumped before saving");
+    }
+
+    @Test
+    @DisplayName("Fail to update a product that changed since it was read")
+    void testVersionMismatchWhileUpdating() {
+        var product = new Product(1, "mock product", "mock product description", 5, 2);
+        doReturn(product).when(productRepository).findProductById(1);
+
+        assertNull(productService.update(product, 1));
+        verify(productRepository, never()).save(any());
     }
 
     @Test
@@ -95,7 +110,50 @@ class ProductServiceTest {
     void testFailToUpdateExistingProduct() {
         var product = new Product(1, "mock product", "mock product description", 5, 1);
         doReturn(null).when(productRepository).findProductById(1);
-        Product updateProduct = productService.update(product);
+        Product updateProduct = productService.update(product, 1);
         assertNull(updateProduct, "Product shouldn't be null");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Delete an existing product with a single statement")
+    void testSuccessfulDeleteProduct() {
+        doReturn(1).when(productRepository).deleteProductById(1);
+
+        assertTrue(productService.delete(1));
+        verify(productRepository, never()).findProductById(1);
+    }
+
+    @Test
+    @DisplayName("Fail to delete a non-existing product")
+    void testFailToDeleteProduct() {
+        doReturn(0).when(productRepository).deleteProductById(1);
+
+        assertFalse(productService.delete(1));
+    }
+
+    @Test
+    @DisplayName("Patch an existing product successfully")
+    void testSuccessfulPatchProduct() {
+        var patch = ProductPatch.fromMergePatch(Map.of("quantity", 7));
+        var patchedProduct = new Product(1, "mock product", "mock product description", 7, 2);
+
+        doReturn(1).when(productRepository).patch(1, 1, patch);
+        doReturn(patchedProduct).when(productRepository).findProductById(1);
+
+        var result = productService.patch(1, 1, patch);
+
+        assertEquals(7, result.getQuantity());
+        assertEquals(2, result.getVersion());
+    }
+
+    @Test
+    @DisplayName("Fail to patch a product with another version")
+    void testFailToPatchProduct() {
+        var patch = ProductPatch.fromMergePatch(Map.of("quantity", 7));
+
+        doReturn(0).when(productRepository).patch(1, 1, patch);
+
+        assertNull(productService.patch(1, 1, patch));
+        verify(productRepository, never()).findProductById(1);
+    }
+}
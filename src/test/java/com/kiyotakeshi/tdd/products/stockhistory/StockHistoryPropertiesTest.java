@@ -0,0 +1,41 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockHistoryPropertiesTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+            .withUserConfiguration(PropertiesConfiguration.class);
+
+    @Test
+    @DisplayName("Bind valid stock history settings")
+    void testValidSettings() {
+        contextRunner.withPropertyValues("products.stock-history.block-size=256")
+                .run(context -> assertEquals(256, context.getBean(StockHistoryProperties.class).getBlockSize()));
+    }
+
+    @Test
+    @DisplayName("Fail to start with empty blocks or caps")
+    void testOutOfRangeSettings() {
+        contextRunner.withPropertyValues("products.stock-history.block-size=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+        contextRunner.withPropertyValues("products.stock-history.max-buckets=0")
+                .run(context -> assertNotNull(context.getStartupFailure()));
+        contextRunner.withPropertyValues("products.stock-history.max-points=" + Integer.MAX_VALUE)
+                .run(context -> assertNotNull(context.getStartupFailure()));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(StockHistoryProperties.class)
+    static class PropertiesConfiguration {
+    }
+}
@@ -0,0 +1,266 @@
+package com.kiyotakeshi.tdd.products.stockhistory;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockHistoryTest {
+
+    private static final Instant START = Instant.parse("2021-10-01T00:00:00Z");
+
+    private final MutableClock clock = new MutableClock(START);
+
+    private int version;
+
+    @Test
+    @DisplayName("Record only changed quantities and query a range")
+    void testRange() {
+        var stockHistory = stockHistory(4, null);
+
+        stockHistory.record(1, ++version, 8);
+        clock.advance(Duration.ofMinutes(1));
+        stockHistory.record(1, ++version, 8);
+        clock.advance(Duration.ofMinutes(1));
+        stockHistory.record(1, ++version, 5);
+        clock.advance(Duration.ofMinutes(1));
+        stockHistory.record(1, ++version, 12);
+        stockHistory.record(2, ++version, 3);
+
+        assertTrue(stockHistory.contains(1));
+        assertFalse(stockHistory.contains(3));
+        assertEquals(List.of("00:00=8", "00:02=5", "00:03=12"), describe(stockHistory.range(1, null, null)));
+        assertEquals(List.of("00:02=5"),
+                describe(stockHistory.range(1, START.plusSeconds(60), START.plusSeconds(180))));
+        assertEquals(List.of(), stockHistory.range(3, null, null));
+        assertEquals(4, stockHistory.getPointCount());
+    }
+
+    @Test
+    @DisplayName("Drop a change whose commit callback runs after a newer one")
+    void testStaleVersionDropped() {
+        var stockHistory = stockHistory(4, null);
+
+        stockHistory.record(1, 1, 8);
+        clock.advance(Duration.ofMinutes(1));
+        // version 3 commits after version 2 but its callback runs first
+        stockHistory.record(1, 3, 2);
+        stockHistory.record(1, 2, 5);
+
+        assertEquals(List.of("00:00=8", "00:01=2"), describe(stockHistory.range(1, null, null)));
+    }
+
+    @Test
+    @DisplayName("Range queries span sealed blocks")
+    void testRangeAcrossBlocks() {
+        var stockHistory = stockHistory(16, null);
+
+        for (int i = 0; i < 1_000; i++) {
+            stockHistory.record(1, ++version, i % 2 == 0 ? i : -i);
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        List<StockPoint> points = stockHistory.range(1, START.plusSeconds(100), START.plusSeconds(200));
+        assertEquals(100, points.size());
+        assertEquals(START.plusSeconds(100), points.get(0).getTimestamp());
+        assertEquals(100, points.get(0).getQuantity());
+        assertEquals(-199, points.get(99).getQuantity());
+        assertEquals(1_000, stockHistory.range(1, null, null).size());
+    }
+
+    @Test
+    @DisplayName("Downsample to buckets carrying the quantity over unchanged buckets")
+    void testRollup() {
+        var stockHistory = stockHistory(4, null);
+
+        clock.advance(Duration.ofMinutes(30));
+        stockHistory.record(1, ++version, 8);
+        clock.advance(Duration.ofMinutes(10));
+        stockHistory.record(1, ++version, 2);
+        clock.advance(Duration.ofMinutes(10));
+        stockHistory.record(1, ++version, 9);
+        // 02:10
+        clock.advance(Duration.ofMinutes(80));
+        stockHistory.record(1, ++version, 4);
+
+        List<StockRollup> rollups = stockHistory.rollup(1, START, START.plus(Duration.ofHours(3)), Duration.ofHours(1));
+
+        assertEquals(List.of(
+                "00:00 8 9 2 9 3",
+                "01:00 9 9 9 9 0",
+                "02:00 9 9 4 4 1"), rollups.stream().map(StockHistoryTest::describe).collect(Collectors.toList()));
+
+        // the bucket starting after the first change opens with the quantity in effect
+        List<StockRollup> later = stockHistory.rollup(1, START.plus(Duration.ofMinutes(45)),
+                START.plus(Duration.ofMinutes(75)), Duration.ofMinutes(30));
+        assertEquals(List.of("00:45 2 9 2 9 1"), later.stream().map(StockHistoryTest::describe).collect(Collectors.toList()));
+    }
+
+    @Test
+    @DisplayName("Reject rollups with too many buckets")
+    void testRollupTooManyBuckets() {
+        var stockHistory = stockHistory(4, null);
+        stockHistory.record(1, ++version, 8);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> stockHistory.rollup(1, START, START.plus(Duration.ofDays(365)), Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> stockHistory.rollup(1, START, START.plusSeconds(1), Duration.ZERO));
+    }
+
+    @Test
+    @DisplayName("Reject ranges with too many changes")
+    void testRangeTooManyPoints() {
+        var stockHistory = stockHistory(16, null);
+        for (int i = 0; i < 1_001; i++) {
+            stockHistory.record(1, ++version, i);
+            clock.advance(Duration.ofSeconds(1));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> stockHistory.range(1, null, null));
+        assertEquals(1_000, stockHistory.range(1, START.plusSeconds(1), null).size());
+    }
+
+    @Test
+    @DisplayName("Reject empty and out of range ranges instead of overflowing")
+    void testExtremeRanges() {
+        var stockHistory = stockHistory(4, null);
+        stockHistory.record(1, ++version, 8);
+
+        var min = Instant.parse("-200000000-01-01T00:00:00Z");
+        var max = Instant.parse("+200000000-01-01T00:00:00Z");
+        assertThrows(IllegalArgumentException.class, () -> stockHistory.rollup(1, min, max, Duration.ofHours(1)));
+        assertThrows(IllegalArgumentException.class, () -> stockHistory.rollup(1, min, max, Duration.ofDays(365)));
+        assertEquals(1, stockHistory.range(1, min, max).size());
+        assertThrows(IllegalArgumentException.class,
+                () -> stockHistory.rollup(1, Instant.MIN, Instant.MAX, Duration.ofSeconds(Long.MAX_VALUE)));
+
+        var farFuture = Instant.parse("+1000000000-01-01T00:00:00Z");
+        assertThrows(IllegalArgumentException.class, () -> stockHistory.range(1, null, farFuture));
+        assertThrows(IllegalArgumentException.class, () -> stockHistory.range(1, START.plusSeconds(1), START));
+        assertThrows(IllegalArgumentException.class, () -> stockHistory.range(1, START, START));
+    }
+
+    @Test
+    @DisplayName("A month of changes every minute takes a few bytes per change")
+    void testCompact() {
+        var stockHistory = stockHistory(1024, null);
+
+        int points = 31 * 24 * 60;
+        for (int i = 0; i < points; i++) {
+            stockHistory.record(1, ++version, 500 + (i % 20) - 10);
+            clock.advance(Duration.ofMinutes(1));
+        }
+
+        assertEquals(points, stockHistory.getPointCount());
+        // against 12 bytes per point as a long timestamp and an int quantity
+        assertTrue(stockHistory.getEncodedBytes() < points * 3L,
+                stockHistory.getEncodedBytes() + " bytes for " + points + " points");
+    }
+
+    @Test
+    @DisplayName("Read back sealed and closed blocks after a restart")
+    void testRestart(@TempDir Path directory) throws IOException {
+        var stockHistory = stockHistory(4, directory);
+        for (int i = 0; i < 10; i++) {
+            stockHistory.record(7, ++version, i);
+            clock.advance(Duration.ofSeconds(1));
+        }
+        // two blocks sealed, the open one is only written on close
+        assertEquals(8, stockHistory(4, directory).getPointCount());
+        stockHistory.close();
+
+        var restarted = stockHistory(4, directory);
+        assertEquals(stockHistory.range(7, null, null).stream().map(StockPoint::toString).collect(Collectors.toList()),
+                restarted.range(7, null, null).stream().map(StockPoint::toString).collect(Collectors.toList()));
+
+        // an unchanged quantity is still not recorded again
+        restarted.record(7, ++version, 9);
+        restarted.record(7, ++version, 10);
+        assertEquals(11, restarted.getPointCount());
+    }
+
+    @Test
+    @DisplayName("Drop a block cut short by a crash")
+    void testTruncatedFile(@TempDir Path directory) throws IOException {
+        var stockHistory = stockHistory(2, directory);
+        for (int i = 0; i < 4; i++) {
+            stockHistory.record(7, ++version, i);
+            clock.advance(Duration.ofSeconds(1));
+        }
+        Path file = directory.resolve("7.stock");
+        Files.write(file, new byte[]{0, 0, 0, 2, 0, 0}, StandardOpenOption.APPEND);
+
+        var restarted = stockHistory(2, directory);
+        assertEquals(4, restarted.getPointCount());
+
+        restarted.record(7, ++version, 4);
+        restarted.record(7, ++version, 5);
+        assertEquals(6, stockHistory(2, directory).getPointCount());
+    }
+
+    private StockHistory stockHistory(int blockSize, Path directory) {
+        var properties = new StockHistoryProperties();
+        properties.setBlockSize(blockSize);
+        properties.setMaxBuckets(1_000);
+        properties.setMaxPoints(1_000);
+        properties.setDirectory(directory);
+        return new StockHistory(properties, clock);
+    }
+
+    private static List<String> describe(List<StockPoint> points) {
+        return points.stream()
+                .map(point -> time(point.getTimestamp()) + "=" + point.getQuantity())
+                .collect(Collectors.toList());
+    }
+
+    private static String describe(StockRollup rollup) {
+        return time(rollup.getStart()) + " " + rollup.getOpen() + " " + rollup.getHigh() + " " + rollup.getLow()
+                + " " + rollup.getClose() + " " + rollup.getChanges();
+    }
+
+    private static String time(Instant instant) {
+        return instant.toString().substring(11, 16);
+    }
+
+    private static class MutableClock extends Clock {
+
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}